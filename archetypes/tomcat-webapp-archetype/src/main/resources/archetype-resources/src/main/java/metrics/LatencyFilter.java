@@ -0,0 +1,248 @@
+package ${package}.metrics;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletMapping;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Records the latency of every request by route, method and status, and
+ * exports it through {@link MetricsRegistry} as
+ * {@code http_server_request_duration_seconds} (p50, p99, p99.9 over the last
+ * minute, cumulative sum and count) plus a {@code _max} gauge.
+ *
+ * The route is the template a servlet stores in {@code ROUTE_ATTRIBUTE}, e.g.
+ * {@code /api/hello}, or else the servlet mapping pattern, so raw paths
+ * never become label values. Requests that go async are recorded when the
+ * async context completes.
+ *
+ * Recording looks up a histogram in tables filled on first use and
+ * increments it, without locks or allocation; the only per-request object is
+ * the completion listener of async requests.
+ */
+@WebFilter(filterName = "LatencyFilter", urlPatterns = "/*", asyncSupported = true)
+public class LatencyFilter implements Filter, MetricsRegistry.Source {
+    public static final String ROUTE_ATTRIBUTE = LatencyFilter.class.getName() + ".route";
+
+    private static final String METRIC = "http_server_request_duration_seconds";
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE", "PATCH", "HEAD", "OPTIONS", "OTHER"};
+    // Caps label cardinality if a servlet ever reports unbounded route names
+    private static final int MAX_ROUTES = 256;
+    private static final String OVERFLOW_ROUTE = "other";
+    private static final String UNMAPPED_ROUTE = "unmapped";
+
+    private final ConcurrentHashMap<String, Route> routes = new ConcurrentHashMap<>();
+    private final Route overflow = new Route(OVERFLOW_ROUTE);
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        MetricsRegistry.getInstance().register(this);
+    }
+
+    @Override
+    public void destroy() {
+        MetricsRegistry.getInstance().unregister(this);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        if (!(request instanceof HttpServletRequest) || !(response instanceof HttpServletResponse)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletRequest req = (HttpServletRequest) request;
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (req.isAsyncStarted()) {
+                req.getAsyncContext().addListener(new Completion(start));
+            } else {
+                // An exception leaving the chain becomes a 500 after this filter has returned
+                int status = failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR
+                                    : ((HttpServletResponse) response).getStatus();
+                record(req, status, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /** Records one request; public so that benchmarks can measure it without a container. */
+    public void record(HttpServletRequest req, int status, long nanos) {
+        route(req).histogram(methodIndex(req.getMethod()), status).recordNanos(nanos);
+    }
+
+    private Route route(HttpServletRequest req) {
+        Object attribute = req.getAttribute(ROUTE_ATTRIBUTE);
+        String name;
+        if (attribute instanceof String) {
+            name = (String) attribute;
+        } else {
+            HttpServletMapping mapping = req.getHttpServletMapping();
+            name = mapping == null || mapping.getPattern() == null ? UNMAPPED_ROUTE : mapping.getPattern();
+        }
+        Route route = routes.get(name);
+        if (route != null) {
+            return route;
+        }
+        if (routes.size() >= MAX_ROUTES) {
+            return overflow;
+        }
+        return routes.computeIfAbsent(name, Route::new);
+    }
+
+    private static int methodIndex(String method) {
+        switch (method) {
+            case "GET": return 0;
+            case "POST": return 1;
+            case "PUT": return 2;
+            case "DELETE": return 3;
+            case "PATCH": return 4;
+            case "HEAD": return 5;
+            case "OPTIONS": return 6;
+            default: return 7;
+        }
+    }
+
+    @Override
+    public void writeTo(PrometheusWriter out) {
+        Map<String, Route> sorted = new TreeMap<>(routes);
+        sorted.put(OVERFLOW_ROUTE, overflow);
+
+        // Snapshots merge the window once per series; both families are written from them
+        List<Series> series = new ArrayList<>();
+        List<LatencyHistogram.Snapshot> snapshots = new ArrayList<>();
+        for (Route route : sorted.values()) {
+            route.forEachSeries(each -> {
+                series.add(each);
+                snapshots.add(each.histogram.snapshot());
+            });
+        }
+
+        out.family(METRIC, "summary", "Request latency by route, method and status; quantiles cover the last "
+                                      + LatencyHistogram.WINDOW_SECONDS + " s");
+        for (int i = 0; i < series.size(); i++) {
+            Series each = series.get(i);
+            each.histogram.writeSummary(out, METRIC, each.labels, snapshots.get(i));
+        }
+
+        out.family(METRIC + "_max", "gauge", "Slowest request in the last " + LatencyHistogram.WINDOW_SECONDS + " s");
+        for (int i = 0; i < series.size(); i++) {
+            out.sample(METRIC + "_max", series.get(i).labels, snapshots.get(i).getMaxSeconds());
+        }
+    }
+
+    private final class Completion implements AsyncListener {
+        private final long start;
+
+        Completion(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            ServletRequest request = event.getSuppliedRequest();
+            ServletResponse response = event.getSuppliedResponse();
+            if (request instanceof HttpServletRequest && response instanceof HttpServletResponse) {
+                record((HttpServletRequest) request, ((HttpServletResponse) response).getStatus(), System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    /**
+     * Histograms of one route, in a small open-addressing table keyed by
+     * method and status. Slots are claimed with a CAS and never removed.
+     */
+    private static final class Route {
+        private static final int CAPACITY = 64;
+
+        private final String name;
+        private final AtomicReferenceArray<Series> table = new AtomicReferenceArray<>(CAPACITY);
+        private final Series full;
+
+        Route(String name) {
+            this.name = name;
+            this.full = new Series(name, METHODS.length - 1, 0);
+        }
+
+        LatencyHistogram histogram(int method, int status) {
+            if (status < 100 || status > 599) {
+                status = 0;
+            }
+            int key = method * 1000 + status;
+            int index = (key * 0x9E3779B9) >>> 26;
+            for (int probe = 0; probe < CAPACITY; probe++) {
+                Series series = table.get(index);
+                if (series == null) {
+                    Series created = new Series(name, method, status);
+                    if (table.compareAndSet(index, null, created)) {
+                        return created.histogram;
+                    }
+                    series = table.get(index);
+                }
+                if (series.key == key) {
+                    return series.histogram;
+                }
+                index = (index + 1) & (CAPACITY - 1);
+            }
+            return full.histogram;
+        }
+
+        void forEachSeries(Consumer<Series> action) {
+            for (int i = 0; i < CAPACITY; i++) {
+                Series series = table.get(i);
+                if (series != null) {
+                    action.accept(series);
+                }
+            }
+            if (full.histogram.getCount() > 0) {
+                action.accept(full);
+            }
+        }
+    }
+
+    private static final class Series {
+        private final int key;
+        private final String labels;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        Series(String route, int method, int status) {
+            this.key = method * 1000 + status;
+            this.labels = PrometheusWriter.label(
+                PrometheusWriter.label(PrometheusWriter.label(null, "route", route), "method", METHODS[method]),
+                "status", status == 0 ? "other" : Integer.toString(status));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ${package}.metrics;
+
+import java.math.BigDecimal;
+
+/**
+ * Builds a scrape in the Prometheus text exposition format (version 0.0.4).
+ *
+ * Labels are passed pre-rendered, e.g. {@code route="/api/hello"},
+ * and combined with {@code label}; values are escaped there once.
+ */
+public class PrometheusWriter {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final StringBuilder out = new StringBuilder(4096);
+
+    /** Writes the HELP and TYPE lines that precede the samples of a metric family. */
+    public PrometheusWriter family(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, String labels, long value) {
+        appendName(name, labels);
+        out.append(value).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, String labels, double value) {
+        appendName(name, labels);
+        out.append(format(value)).append('\n');
+        return this;
+    }
+
+    /** Appends {@code name="value"} to already rendered labels, which may be null or empty. */
+    public static String label(String labels, String name, String value) {
+        String rendered = name + "=\"" + escape(value) + "\"";
+        return labels == null || labels.isEmpty() ? rendered : labels + "," + rendered;
+    }
+
+    public static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        // Plain notation keeps bucket labels readable, e.g. le="0.0005" rather than le="5.0E-4"
+        return BigDecimal.valueOf(value).toPlainString();
+    }
+
+    private void appendName(String name, String labels) {
+        out.append(name);
+        if (labels != null && !labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
@@ -0,0 +1,62 @@
+package ${package}.repository;
+
+import ${package}.model.Item;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Row mapper for {@link Item} that avoids bean reflection: column positions
+ * are resolved once per result set, then every row is read by index.
+ */
+public class ItemMapper implements RowMapper<Item> {
+    private static final String[] COLUMNS = {"id", "title", "description", "created_at", "updated_at"};
+    
+    @Override
+    public Item map(ResultSet rs, StatementContext ctx) throws SQLException {
+        return specialize(rs, ctx).map(rs, ctx);
+    }
+    
+    @Override
+    public RowMapper<Item> specialize(ResultSet rs, StatementContext ctx) throws SQLException {
+        int[] index = resolve(rs.getMetaData());
+        int id = index[0];
+        int title = index[1];
+        int description = index[2];
+        int createdAt = index[3];
+        int updatedAt = index[4];
+        
+        return (row, context) -> {
+            Item item = new Item();
+            if (id > 0) {
+                long value = row.getLong(id);
+                item.setId(row.wasNull() ? null : value);
+            }
+            if (title > 0) item.setTitle(row.getString(title));
+            if (description > 0) item.setDescription(row.getString(description));
+            if (createdAt > 0) item.setCreatedAt(row.getObject(createdAt, LocalDateTime.class));
+            // Last, because setTitle and setDescription touch updatedAt
+            if (updatedAt > 0) item.setUpdatedAt(row.getObject(updatedAt, LocalDateTime.class));
+            return item;
+        };
+    }
+    
+    // JDBC column indexes start at 1, so 0 marks a column that is not selected
+    private static int[] resolve(ResultSetMetaData metaData) throws SQLException {
+        int[] index = new int[COLUMNS.length];
+        for (int column = metaData.getColumnCount(); column >= 1; column--) {
+            String label = metaData.getColumnLabel(column);
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (COLUMNS[i].equalsIgnoreCase(label)) {
+                    index[i] = column;
+                    break;
+                }
+            }
+        }
+        return index;
+    }
+}
@@ -1,8 +1,7 @@
 package ${package}.repository;
 
 import ${package}.model.Item;
-import org.jdbi.v3.core.mapper.reflect.BeanMapper;
-import org.jdbi.v3.sqlobject.config.RegisterBeanMapper;
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
 import org.jdbi.v3.sqlobject.customizer.Bind;
 import org.jdbi.v3.sqlobject.customizer.BindBean;
 import org.jdbi.v3.sqlobject.statement.GetGeneratedKeys;
@@ -12,7 +11,7 @@ import org.jdbi.v3.sqlobject.statement.SqlUpdate;
 import java.util.List;
 import java.util.Optional;
 
-@RegisterBeanMapper(Item.class)
+@RegisterRowMapper(ItemMapper.class)
 public interface ItemRepository {
     
     @SqlQuery("SELECT * FROM items ORDER BY created_at DESC")
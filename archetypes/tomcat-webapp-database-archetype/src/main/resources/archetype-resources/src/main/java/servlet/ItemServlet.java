@@ -18,6 +18,7 @@ public class ItemServlet extends HttpServlet {
     
     private ItemRepository itemRepository;
     private ObjectMapper objectMapper;
+    private Router router;
     
     @Override
     public void init() throws ServletException {
@@ -25,6 +26,10 @@ public class ItemServlet extends HttpServlet {
         this.itemRepository = DatabaseManager.getInstance().getJdbi().onDemand(ItemRepository.class);
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
+        this.router = new Router("/api/items")
+            .add(Router.Method.GET, "/", (req, resp, id) -> listItems(resp))
+            .add(Router.Method.GET, "/{id}", (req, resp, id) -> getItem(id, resp))
+            .add(Router.Method.POST, "/", (req, resp, id) -> createItem(req, resp));
     }
     
     @Override
@@ -34,25 +39,10 @@ public class ItemServlet extends HttpServlet {
         setupCorsHeaders(response);
         response.setContentType("application/json");
         
-        String pathInfo = request.getPathInfo();
-        
         try {
-            if (pathInfo == null || pathInfo.equals("/")) {
-                // Get all items
-                List<Item> items = itemRepository.findAll();
-                objectMapper.writeValue(response.getWriter(), items);
-            } else {
-                // Get specific item by ID
-                String idStr = pathInfo.substring(1);
-                Long id = Long.valueOf(idStr);
-                Item item = itemRepository.findById(id).orElse(null);
-                
-                if (item != null) {
-                    objectMapper.writeValue(response.getWriter(), item);
-                } else {
-                    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                    response.getWriter().write("{\"error\": \"Item not found\"}");
-                }
+            if (!router.dispatch(Router.Method.GET, request, response)) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                response.getWriter().write("{\"error\": \"Not found\"}");
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -69,12 +59,10 @@ public class ItemServlet extends HttpServlet {
         response.setContentType("application/json");
         
         try {
-            Item item = objectMapper.readValue(request.getReader(), Item.class);
-            Long id = itemRepository.insert(item);
-            item.setId(id);
-            
-            response.setStatus(HttpServletResponse.SC_CREATED);
-            objectMapper.writeValue(response.getWriter(), item);
+            if (!router.dispatch(Router.Method.POST, request, response)) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                response.getWriter().write("{\"error\": \"Not found\"}");
+            }
         } catch (Exception e) {
             e.printStackTrace();
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -89,6 +77,31 @@ public class ItemServlet extends HttpServlet {
         response.setStatus(HttpServletResponse.SC_OK);
     }
     
+    private void listItems(HttpServletResponse response) throws IOException {
+        List<Item> items = itemRepository.findAll();
+        objectMapper.writeValue(response.getWriter(), items);
+    }
+    
+    private void getItem(long id, HttpServletResponse response) throws IOException {
+        Item item = itemRepository.findById(id).orElse(null);
+        
+        if (item != null) {
+            objectMapper.writeValue(response.getWriter(), item);
+        } else {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.getWriter().write("{\"error\": \"Item not found\"}");
+        }
+    }
+    
+    private void createItem(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Item item = objectMapper.readValue(request.getReader(), Item.class);
+        Long id = itemRepository.insert(item);
+        item.setId(id);
+        
+        response.setStatus(HttpServletResponse.SC_CREATED);
+        objectMapper.writeValue(response.getWriter(), item);
+    }
+    
     private void setupCorsHeaders(HttpServletResponse response) {
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
@@ -5,16 +5,95 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.sql.DataSource;
 
 public class Database
 {
+  private static volatile StatementListener statementListener;
+  // Slowest statements over the threshold by SQL text, at most slowStatementCount of them
+  private static final HashMap<String, SlowStatement> slowStatements = new HashMap<>();
+  private static volatile long slowStatementNanos;
+  private static int slowStatementCount;
+  // Plans are taken off the caller's thread; no core thread, so nothing needs stopping
+  private static final ThreadPoolExecutor explainer = new ThreadPoolExecutor(
+    0, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(16), r -> {
+      Thread t = new Thread(r, "jtools-explain");
+      t.setDaemon(true);
+      return t;
+    }, new ThreadPoolExecutor.DiscardPolicy());
+  private static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+  private static final int DEFAULT_BATCH_SIZE = 1000;
+  private static final int DEFAULT_FETCH_SIZE = 500;
+  // maxTotal of a Tomcat JDBC resource that does not set it
+  private static final int DEFAULT_ASYNC_THREADS = 8;
+  private static final int DEFAULT_ASYNC_QUEUE = 256;
+  // Cache key prefix of statements prepared to return generated keys
+  private static final String KEYS = "\u0000keys\u0000";
+  // INSERT ... VALUES (?, ..., ?) with nothing but placeholders in the tuple and none after it
+  private static final Pattern MULTI_ROW_INSERT = Pattern.compile(
+    "(?is)(\\s*insert\\s+into\\s+.+?\\s+values\\s*)(\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\))([^?]*)");
+  private static final Pattern RETURNING = Pattern.compile("(?i)\\breturning\\b");
+  // A row conflicting with an earlier row of the same statement fails instead of updating it
+  private static final Pattern UPSERT = Pattern.compile("(?i)\\bon\\s+(conflict|duplicate\\s+key)\\b");
+  // Statements that have a plan; DDL and utility statements have none
+  private static final Pattern EXPLAINABLE = Pattern.compile("(?is)\\s*(select|with|values|insert|update|delete|merge)\\b.*");
+  // Runs selectAsync and queryAsync; started on first use, stopped by shutdownAsync()
+  private static ExecutorService async;
+
   private final String source;
+  // Set by open() or, for the async methods, by lookup() on whichever thread calls first
+  private volatile DataSource dataSource;
   private Connection connection;
+  private int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+  private int fetchSize = DEFAULT_FETCH_SIZE;
+  private String keyColumn = "id";
+  private boolean multiRowInserts;
+  // Lower-case product name of the open connection, read once
+  private String product;
+  private long statementCacheHits;
+  private long statementCacheMisses;
+  // Open PostgreSQL cursors that turned autocommit off to stream; the last to close turns it back on
+  private int cursorTransactions;
+  // Bumped when begin(), commit(), rollback() or close() take that transaction over from the cursors
+  private long cursorEpoch;
+
+  // Idle statements of the open connection by SQL text, least recently used first.
+  // A statement is taken out while it runs, so an open cursor never shares it
+  private final LinkedHashMap<String, PreparedStatement> statements =
+    new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+        if (size() <= Database.this.statementCacheSize) return false;
+        closeQuietly(eldest.getValue());
+        return true;
+      }
+    };
 
   public Database(String src) {
     this.source = src;
@@ -22,14 +101,87 @@ public class Database
   }
 
   public static class Record extends HashMap<String, Object> {
+    public Record() {
+    }
+
+    // Sized for the columns of a result, so filling it never rehashes
+    Record(int columns) {
+      super(columns * 4 / 3 + 1);
+    }
+  }
+
+  // Column names of a result, read once; JDBC resolves a duplicate name to its first column
+  static final class Columns {
+    final String[] names;
+    private final HashMap<String, Integer> index;
+
+    Columns(ResultSetMetaData meta) throws SQLException {
+      this.names = new String[meta.getColumnCount()];
+      this.index = new HashMap<>(this.names.length * 2);
+      for (int i = 0; i < this.names.length; i++) {
+        this.names[i] = meta.getColumnName(i + 1);
+        this.index.putIfAbsent(this.names[i], i + 1);
+      }
+    }
+
+    // 1-based column of name, 0 when there is none
+    int indexOf(String name) {
+      Integer i = this.index.get(name);
+      return i == null ? 0 : i;
+    }
+
+    // Of duplicate names the last column wins, as it always has
+    Record read(ResultSet rs) throws SQLException {
+      Record row = new Record(this.names.length);
+      for (int i = 0; i < this.names.length; i++) {
+        row.put(this.names[i], rs.getObject(i + 1));
+      }
+      return row;
+    }
   }
 
   public static class Recordset extends ArrayList<Record> {
+    private String[] columns = new String[0];
+
+    /** Column names in select order; known even when there are no rows. */
+    public List<String> columns() {
+      return Collections.unmodifiableList(Arrays.asList(this.columns));
+    }
   }
 
-  public static class Cursor {
+  /**
+   * The current row of a Cursor. Columns are numbered from 1 as in JDBC;
+   * the primitive getters return 0 or false for NULL, which wasNull() tells
+   * apart.
+   */
+  public interface Row {
+    int getColumnCount() throws Exception;
+    Object get(int column) throws Exception;
+    Object get(String column) throws Exception;
+    String getString(int column) throws Exception;
+    String getString(String column) throws Exception;
+    long getLong(int column) throws Exception;
+    long getLong(String column) throws Exception;
+    int getInt(int column) throws Exception;
+    int getInt(String column) throws Exception;
+    double getDouble(int column) throws Exception;
+    double getDouble(String column) throws Exception;
+    boolean getBoolean(int column) throws Exception;
+    boolean getBoolean(String column) throws Exception;
+    boolean wasNull() throws Exception;
+    Record getRow() throws Exception;
+  }
+
+  public static class Cursor implements Row, AutoCloseable {
     private final ResultSet resultSet;
     private final PreparedStatement statement;
+    private Columns columns;
+    private Database owner;
+    private Connection connection;
+    private String sql;
+    // Epoch of the cursor transaction this cursor holds, -1 when it holds none
+    private long epoch = -1;
+    private boolean closed;
 
     public Cursor(ResultSet rs, PreparedStatement ps) {
       this.resultSet = rs;
@@ -40,38 +192,361 @@ public class Database
       return this.resultSet.next();
     }
 
-    public Object get(String column) throws Exception {
+    private Columns columns() throws SQLException {
+      if (this.columns == null) {
+        this.columns = new Columns(this.resultSet.getMetaData());
+      }
+      return this.columns;
+    }
+
+    /** 1-based index of column, or 0 when the result has no column of that exact name. */
+    public int columnIndex(String column) throws Exception {
+      return columns().indexOf(column);
+    }
+
+    public List<String> columnNames() throws Exception {
+      return Collections.unmodifiableList(Arrays.asList(columns().names));
+    }
+
+    @Override
+    public int getColumnCount() throws Exception {
+      return columns().names.length;
+    }
+
+    @Override
+    public Object get(int column) throws Exception {
       return this.resultSet.getObject(column);
     }
 
+    // Names the index does not know, e.g. in another case, are left to the driver
+    @Override
+    public Object get(String column) throws Exception {
+      int i = columnIndex(column);
+      return i > 0 ? this.resultSet.getObject(i) : this.resultSet.getObject(column);
+    }
+
+    @Override
+    public String getString(int column) throws Exception {
+      return this.resultSet.getString(column);
+    }
+
+    @Override
+    public String getString(String column) throws Exception {
+      int i = columnIndex(column);
+      return i > 0 ? this.resultSet.getString(i) : this.resultSet.getString(column);
+    }
+
+    @Override
+    public long getLong(int column) throws Exception {
+      return this.resultSet.getLong(column);
+    }
+
+    @Override
+    public long getLong(String column) throws Exception {
+      int i = columnIndex(column);
+      return i > 0 ? this.resultSet.getLong(i) : this.resultSet.getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) throws Exception {
+      return this.resultSet.getInt(column);
+    }
+
+    @Override
+    public int getInt(String column) throws Exception {
+      int i = columnIndex(column);
+      return i > 0 ? this.resultSet.getInt(i) : this.resultSet.getInt(column);
+    }
+
+    @Override
+    public double getDouble(int column) throws Exception {
+      return this.resultSet.getDouble(column);
+    }
+
+    @Override
+    public double getDouble(String column) throws Exception {
+      int i = columnIndex(column);
+      return i > 0 ? this.resultSet.getDouble(i) : this.resultSet.getDouble(column);
+    }
+
+    @Override
+    public boolean getBoolean(int column) throws Exception {
+      return this.resultSet.getBoolean(column);
+    }
+
+    @Override
+    public boolean getBoolean(String column) throws Exception {
+      int i = columnIndex(column);
+      return i > 0 ? this.resultSet.getBoolean(i) : this.resultSet.getBoolean(column);
+    }
+
+    @Override
+    public boolean wasNull() throws Exception {
+      return this.resultSet.wasNull();
+    }
+
+    /** A copy of the current row, which stays valid after the cursor moves on. */
+    @Override
     public Record getRow() throws Exception {
-      Record row = new Record();
-      ResultSetMetaData meta = this.resultSet.getMetaData();
-      int columnCount = meta.getColumnCount();
+      return columns().read(this.resultSet);
+    }
 
-      for (int i = 1; i <= columnCount; i++) {
-        row.put(meta.getColumnName(i), this.resultSet.getObject(i));
-      }
-      return row;
+    /**
+     * The remaining rows, each as this cursor itself, so values must be read
+     * before the loop moves on. The cursor closes after the last row.
+     */
+    public Iterable<Row> rows() {
+      return () -> new Iterator<Row>() {
+        private Boolean ahead;
+
+        @Override
+        public boolean hasNext() {
+          if (this.ahead == null) {
+            try {
+              this.ahead = !Cursor.this.closed && Cursor.this.next();
+            } catch (Exception e) {
+              throw closeAfter(new RuntimeException("Cursor read failed", e));
+            }
+            if (!this.ahead) close();
+          }
+          return this.ahead;
+        }
+
+        @Override
+        public Row next() {
+          if (!hasNext()) throw new NoSuchElementException();
+          this.ahead = null;
+          return Cursor.this;
+        }
+      };
     }
 
+    /**
+     * The remaining rows as a lazy stream. The cursor closes after the last
+     * row, when reading fails, or when the stream is closed.
+     */
+    public Stream<Record> stream() {
+      Spliterator<Record> rows = new Spliterators.AbstractSpliterator<Record>(
+          Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+        @Override
+        public boolean tryAdvance(Consumer<? super Record> action) {
+          if (Cursor.this.closed) return false;
+          Record row;
+          try {
+            if (!next()) {
+              close();
+              return false;
+            }
+            row = getRow();
+          } catch (Exception e) {
+            throw closeAfter(new RuntimeException("Cursor read failed", e));
+          }
+          action.accept(row);
+          return true;
+        }
+      };
+      return StreamSupport.stream(rows, false).onClose(this::close);
+    }
+
+    /** Never throws: a failure here leaves nothing for the caller to undo. */
+    @Override
     public void close() {
+      release();
+    }
+
+    // Closes the cursor after a read failed, keeping any close failure with the read failure
+    private RuntimeException closeAfter(RuntimeException failure) {
+      SQLException e = release();
+      if (e != null) failure.addSuppressed(e);
+      return failure;
+    }
+
+    private SQLException release() {
+      if (this.closed) return null;
+      this.closed = true;
+      SQLException failure = null;
       try {
         if (this.resultSet != null) this.resultSet.close();
-        if (this.statement != null) this.statement.close();
-      } catch (SQLException e) {}
+      } catch (SQLException e) {
+        failure = e;
+      }
+      Database owner = this.owner;
+      this.owner = null;
+      // Back into the cache of the Database that opened the cursor, unless it has reconnected since
+      if (owner != null && owner.connection == this.connection) {
+        try {
+          // Back to default, so a select reusing the statement fetches in one go
+          this.statement.setFetchSize(0);
+        } catch (SQLException e) {}
+        owner.release(this.sql, this.statement);
+        if (this.epoch >= 0) {
+          SQLException e = owner.cursorClosed(this.epoch);
+          if (e != null) {
+            if (failure == null) failure = e; else failure.addSuppressed(e);
+          }
+        }
+      } else {
+        closeQuietly(this.statement);
+      }
+      return failure;
+    }
+  }
+
+  public interface StatementListener {
+    void executed(String sql, Object[] params, long nanos);
+  }
+
+  public static void setStatementListener(StatementListener listener)
+  {
+    statementListener = listener;
+  }
+
+  public static StatementListener getStatementListener()
+  {
+    return statementListener;
+  }
+
+  /**
+   * Keeps the count slowest statements that take at least thresholdMillis,
+   * with the plan of each; a threshold or count of 0 stops and clears it.
+   */
+  public static void captureSlowStatements(long thresholdMillis, int count)
+  {
+    synchronized (slowStatements) {
+      slowStatements.clear();
+      slowStatementCount = Math.max(count, 0);
+      slowStatementNanos = count > 0 && thresholdMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(thresholdMillis) : 0;
+    }
+  }
+
+  /** The captured statements, slowest first: statement, calls, max_ms and plan. */
+  public static Recordset slowStatements()
+  {
+    Recordset result = new Recordset();
+    result.columns = new String[] {"statement", "calls", "max_ms", "plan"};
+    synchronized (slowStatements) {
+      for (SlowStatement slow : slowStatements.values()) {
+        Record row = new Record(4);
+        row.put("statement", slow.sql);
+        row.put("calls", slow.calls);
+        row.put("max_ms", slow.maxNanos / 1e6);
+        row.put("plan", slow.plan);
+        result.add(row);
+      }
+    }
+    result.sort(Comparator.comparingDouble((Record row) -> (Double) row.get("max_ms")).reversed());
+    return result;
+  }
+
+  private static final class SlowStatement {
+    final String sql;
+    long calls;
+    long maxNanos;
+    volatile String plan;
+
+    SlowStatement(String sql, long nanos) {
+      this.sql = sql;
+      this.calls = 1;
+      this.maxNanos = nanos;
+    }
+  }
+
+  private void timed(String sql, Object[] params, long start)
+  {
+    long nanos = System.nanoTime() - start;
+    StatementListener listener = statementListener;
+    if (listener != null) {
+      listener.executed(sql, params, nanos);
+    }
+    long threshold = slowStatementNanos;
+    if (threshold > 0 && nanos >= threshold) {
+      slow(sql, params, nanos);
+    }
+  }
+
+  // SQL text is the statement's shape: values are bound, not inlined
+  private void slow(String sql, Object[] params, long nanos)
+  {
+    SlowStatement slow;
+    synchronized (slowStatements) {
+      slow = slowStatements.get(sql);
+      if (slow != null) {
+        slow.calls++;
+        slow.maxNanos = Math.max(slow.maxNanos, nanos);
+        return;
+      }
+      if (slowStatementCount == 0) return;
+      if (slowStatements.size() >= slowStatementCount) {
+        SlowStatement fastest = Collections.min(slowStatements.values(),
+          Comparator.comparingLong((SlowStatement s) -> s.maxNanos));
+        if (fastest.maxNanos >= nanos) return;
+        slowStatements.remove(fastest.sql);
+      }
+      slow = new SlowStatement(sql, nanos);
+      slowStatements.put(sql, slow);
+    }
+    DataSource ds = this.dataSource;
+    if (ds == null || !EXPLAINABLE.matcher(sql).matches()) return;
+    SlowStatement target = slow;
+    Object[] values = params.clone();
+    explainer.execute(() -> target.plan = explain(ds, sql, values));
+  }
+
+  // Plain EXPLAIN never runs the statement, so writes are safe to plan too
+  private static String explain(DataSource ds, String sql, Object[] params)
+  {
+    try (Connection conn = ds.getConnection()) {
+      String product = conn.getMetaData().getDatabaseProductName().toLowerCase();
+      String prefix;
+      if (product.contains("postgresql") || product.contains("mysql") || product.contains("mariadb")
+          || product.contains("h2")) {
+        prefix = "EXPLAIN ";
+      } else if (product.contains("sqlite")) {
+        prefix = "EXPLAIN QUERY PLAN ";
+      } else {
+        return "No plan: EXPLAIN is not supported on " + product;
+      }
+      StringBuilder plan = new StringBuilder();
+      try (PreparedStatement ps = conn.prepareStatement(prefix + sql)) {
+        ps.setQueryTimeout(30);
+        bind(ps, params);
+        try (ResultSet rs = ps.executeQuery()) {
+          int columns = rs.getMetaData().getColumnCount();
+          while (rs.next()) {
+            for (int i = 1; i <= columns; i++) {
+              if (i > 1) plan.append('\t');
+              plan.append(rs.getString(i));
+            }
+            plan.append('\n');
+          }
+        }
+      }
+      return plan.toString();
+    } catch (Exception e) {
+      return "EXPLAIN failed: " + e;
     }
   }
 
   public void open() throws Exception
   {
+    closeStatements();
+    this.product = null;
+    endCursorTransactions();
     Context ctx = new InitialContext();
     DataSource ds = (DataSource) ctx.lookup(this.source);
+    this.dataSource = ds;
     this.connection = ds.getConnection();
   }
 
   public void close()
   {
+    closeStatements();
+    this.product = null;
+    if (this.cursorTransactions > 0) {
+      // Commits what ran while the cursors were open, as autocommit would have
+      try { this.connection.setAutoCommit(true); } catch (SQLException e) {}
+    }
+    endCursorTransactions();
     if (this.connection != null) {
       try { this.connection.close(); } catch (SQLException e) {}
       this.connection = null;
@@ -90,95 +565,621 @@ public class Database
   public void begin() throws Exception
   {
     this.connection.setAutoCommit(false);
+    // The transaction of open cursors, if any, becomes the caller's
+    endCursorTransactions();
   }
 
   public void commit() throws Exception
   {
     this.connection.commit();
     this.connection.setAutoCommit(true);
+    endCursorTransactions();
   }
 
   public void rollback() throws Exception
   {
     this.connection.rollback();
     this.connection.setAutoCommit(true);
+    endCursorTransactions();
   }
 
   public int query(String sql, Object... params)
       throws Exception
   {
-    if (this.connection == null || this.connection.isClosed()) {
-      throw new Exception("Connection not available");
+    check(sql);
+    PreparedStatement ps = prepare(sql);
+    try {
+      bind(ps, params);
+      long start = System.nanoTime();
+      int result = ps.executeUpdate();
+      timed(sql, params, start);
+      release(sql, ps);
+      return result;
+    } catch (Exception e) {
+      closeQuietly(ps);
+      throw e;
+    }
+  }
+
+  public Recordset select(String sql, Object... params)
+      throws Exception
+  {
+    check(sql);
+    PreparedStatement ps = prepare(sql);
+    try {
+      bind(ps, params);
+      long start = System.nanoTime();
+      Recordset result = read(ps.executeQuery());
+      timed(sql, params, start);
+      release(sql, ps);
+      return result;
+    } catch (Exception e) {
+      closeQuietly(ps);
+      throw e;
     }
+  }
+
+  // Reads and closes the whole result
+  private static Recordset read(ResultSet rs) throws SQLException
+  {
+    try (rs) {
+      Recordset result = new Recordset();
+      Columns columns = new Columns(rs.getMetaData());
+      result.columns = columns.names;
+      while (rs.next()) {
+        result.add(columns.read(rs));
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Runs a query on a connection of its own from the pool, prepared there
+   * each time without the statement cache. Completing the future before
+   * the query has finished, e.g. by cancel() or orTimeout(), cancels it.
+   */
+  public CompletableFuture<Recordset> selectAsync(String sql, Object... params)
+  {
+    return submit(sql, params, ps -> read(ps.executeQuery()));
+  }
+
+  /** Like selectAsync, for INSERT, UPDATE and DELETE; completes with the rows affected. */
+  public CompletableFuture<Integer> queryAsync(String sql, Object... params)
+  {
+    return submit(sql, params, PreparedStatement::executeUpdate);
+  }
+
+  /**
+   * Completes with the results of all futures, in order. The first failure
+   * cancels the others, and so does cancelling the returned future.
+   */
+  @SafeVarargs
+  public static <T> CompletableFuture<List<T>> all(CompletableFuture<? extends T>... futures)
+  {
+    // Copied element by element, so the varargs array itself never leaves this method
+    List<CompletableFuture<? extends T>> pending = new ArrayList<>(futures.length);
+    for (CompletableFuture<? extends T> future : futures) {
+      pending.add(future);
+    }
+    CompletableFuture<List<T>> result = new CompletableFuture<>();
+    CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+      List<T> values = new ArrayList<>(pending.size());
+      for (CompletableFuture<? extends T> future : pending) {
+        values.add(future.join());
+      }
+      result.complete(values);
+    });
+    // Fails with the first error, not with the cancellations it causes
+    for (CompletableFuture<? extends T> future : pending) {
+      future.whenComplete((value, error) -> {
+        if (error != null) result.completeExceptionally(error);
+      });
+    }
+    result.whenComplete((values, error) -> {
+      if (error == null) return;
+      for (CompletableFuture<?> future : pending) {
+        future.cancel(true);
+      }
+    });
+    return result;
+  }
+
+  private interface Execution<T> {
+    T execute(PreparedStatement ps) throws Exception;
+  }
+
+  private <T> CompletableFuture<T> submit(String sql, Object[] params, Execution<T> execution)
+  {
     if (sql == null || sql.trim().isEmpty()) {
-      throw new Exception("Invalid SQL");
+      return CompletableFuture.failedFuture(new Exception("Invalid SQL"));
+    }
+    DataSource ds;
+    try {
+      // Looked up here: JNDI needs the caller's context class loader
+      ds = lookup();
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(e);
     }
 
-    PreparedStatement ps = this.connection.prepareStatement(sql);
-    for (int i = 0; i < params.length; i++) {
-      ps.setObject(i + 1, params[i]);
+    Object[] values = params.clone();
+    CompletableFuture<T> future = new CompletableFuture<>();
+    // The statement while it executes, for whoever completes the future first
+    AtomicReference<Statement> running = new AtomicReference<>();
+    asyncExecutor().execute(() -> {
+      try (Connection conn = ds.getConnection();
+           PreparedStatement ps = conn.prepareStatement(sql)) {
+        bind(ps, values);
+        running.set(ps);
+        // Cancelled while waiting for a connection: the statement is not run at all
+        if (future.isDone()) return;
+        long start = System.nanoTime();
+        T result;
+        try {
+          result = execution.execute(ps);
+        } finally {
+          running.set(null);
+        }
+        timed(sql, values, start);
+        future.complete(result);
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    });
+    future.whenComplete((result, error) -> {
+      Statement statement = running.getAndSet(null);
+      if (statement != null) {
+        try { statement.cancel(); } catch (SQLException ignored) {}
+      }
+    });
+    return future;
+  }
+
+  private synchronized DataSource lookup() throws Exception
+  {
+    if (this.dataSource == null) {
+      Context ctx = new InitialContext();
+      this.dataSource = (DataSource) ctx.lookup(this.source);
+    }
+    return this.dataSource;
+  }
+
+  // Threads beyond the connection pool's size would only wait for it. When the queue is full
+  // the caller runs the statement itself, which slows a burst down instead of queueing it all
+  private static synchronized ExecutorService asyncExecutor()
+  {
+    if (async == null) {
+      int threads = Integer.getInteger("jtools.async.threads", DEFAULT_ASYNC_THREADS);
+      int queue = Integer.getInteger("jtools.async.queue", DEFAULT_ASYNC_QUEUE);
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(queue), r -> {
+          Thread t = new Thread(r, "jtools-async");
+          t.setDaemon(true);
+          return t;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+      pool.allowCoreThreadTimeOut(true);
+      async = pool;
+    }
+    return async;
+  }
+
+  /**
+   * Stops the threads of selectAsync and queryAsync once the statements
+   * already submitted have run; a later call starts new ones. Call it when
+   * the web application stops.
+   */
+  public static synchronized void shutdownAsync()
+  {
+    if (async != null) {
+      async.shutdown();
+      async = null;
+    }
+  }
+
+  public Cursor cursor(String sql, Object... params) throws Exception {
+    check(sql);
+    String product = product();
+    // PostgreSQL buffers the whole result unless the cursor runs inside a transaction.
+    // Outside begin() autocommit is turned off until the last such cursor closes
+    long epoch = -1;
+    if (product.contains("postgresql") && (this.cursorTransactions > 0 || this.connection.getAutoCommit())) {
+      if (this.cursorTransactions == 0) this.connection.setAutoCommit(false);
+      this.cursorTransactions++;
+      epoch = this.cursorEpoch;
+    }
+
+    PreparedStatement ps = null;
+    try {
+      ps = prepare(sql);
+      // Connector/J only streams with this sentinel; other drivers take the fetch size as is
+      ps.setFetchSize(product.contains("mysql") ? Integer.MIN_VALUE : this.fetchSize);
+      bind(ps, params);
+      long start = System.nanoTime();
+      ResultSet rs = ps.executeQuery();
+      timed(sql, params, start);
+      Cursor cursor = new Cursor(rs, ps);
+      cursor.owner = this;
+      cursor.connection = this.connection;
+      cursor.sql = sql;
+      cursor.epoch = epoch;
+      return cursor;
+    } catch (Exception e) {
+      closeQuietly(ps);
+      if (epoch >= 0) cursorClosed(epoch);
+      throw e;
+    }
+  }
+
+  // The last cursor holding autocommit off turns it back on, which commits what ran meanwhile
+  private SQLException cursorClosed(long epoch)
+  {
+    if (epoch != this.cursorEpoch || --this.cursorTransactions > 0) return null;
+    try {
+      this.connection.setAutoCommit(true);
+      return null;
+    } catch (SQLException e) {
+      try { this.connection.rollback(); this.connection.setAutoCommit(true); } catch (SQLException ignored) {}
+      return e;
+    }
+  }
+
+  private void endCursorTransactions()
+  {
+    this.cursorTransactions = 0;
+    this.cursorEpoch++;
+  }
+
+  /** Rows fetched per round trip by cursors opened after this call (default 500). */
+  public void setFetchSize(int rows)
+  {
+    if (rows < 1) {
+      throw new IllegalArgumentException("Fetch size must be positive");
+    }
+    this.fetchSize = rows;
+  }
+
+  public int getFetchSize()
+  {
+    return this.fetchSize;
+  }
+
+  /** Whether batch() sends an INSERT ... VALUES (?, ?) as one multi-row INSERT per chunk (default false). */
+  public void setMultiRowInserts(boolean multiRowInserts)
+  {
+    this.multiRowInserts = multiRowInserts;
+  }
+
+  public boolean isMultiRowInserts()
+  {
+    return this.multiRowInserts;
+  }
+
+  public int[] batch(String sql, Iterable<Object[]> rows)
+      throws Exception
+  {
+    return batch(sql, rows, DEFAULT_BATCH_SIZE, true);
+  }
+
+  /**
+   * Runs sql once per row, chunkSize rows per round trip, and returns the
+   * update count of each chunk. With transaction set, all chunks commit or
+   * roll back together unless begin() already opened a transaction.
+   */
+  public int[] batch(String sql, Iterable<Object[]> rows, int chunkSize, boolean transaction)
+      throws Exception
+  {
+    check(sql);
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size must be positive");
+    }
+
+    int rowsPerStatement = this.multiRowInserts ? Math.min(multiRowLimit(sql), chunkSize) : 0;
+    boolean ownTransaction = transaction && this.connection.getAutoCommit();
+    if (ownTransaction) this.connection.setAutoCommit(false);
+    ArrayList<Integer> counts = new ArrayList<>();
+    try {
+      ArrayList<Object[]> chunk = new ArrayList<>(Math.min(chunkSize, DEFAULT_BATCH_SIZE));
+      for (Object[] row : rows) {
+        chunk.add(row);
+        if (chunk.size() == chunkSize) {
+          counts.add(executeChunk(sql, chunk, rowsPerStatement, null));
+          chunk.clear();
+        }
+      }
+      if (!chunk.isEmpty()) {
+        counts.add(executeChunk(sql, chunk, rowsPerStatement, null));
+      }
+      if (ownTransaction) this.connection.commit();
+    } catch (Exception e) {
+      if (ownTransaction) {
+        try { this.connection.rollback(); } catch (SQLException ignored) {}
+      }
+      throw e;
+    } finally {
+      if (ownTransaction) this.connection.setAutoCommit(true);
+    }
+
+    int[] result = new int[counts.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = counts.get(i);
     }
-    int result = ps.executeUpdate();
-    ps.close();
     return result;
   }
 
-  public Recordset select(String sql, Object... params)
+  // keys collects the generated keys of a multi-row INSERT; null when they are not wanted
+  private int executeChunk(String sql, List<Object[]> chunk, int rowsPerStatement, Keys keys)
       throws Exception
   {
-    if (this.connection == null || this.connection.isClosed()) {
-      throw new Exception("Connection not available");
+    long start = System.nanoTime();
+    int count = rowsPerStatement > 1
+      ? executeMultiRow(sql, chunk, rowsPerStatement, keys)
+      : executeBatch(sql, chunk);
+    timed(sql, chunk.get(0), start);
+    return count;
+  }
+
+  private int executeBatch(String sql, List<Object[]> chunk)
+      throws Exception
+  {
+    PreparedStatement ps = prepare(sql);
+    try {
+      for (Object[] row : chunk) {
+        bind(ps, row);
+        ps.addBatch();
+      }
+      int count = sum(ps.executeBatch());
+      release(sql, ps);
+      return count;
+    } catch (Exception e) {
+      closeQuietly(ps);
+      throw e;
     }
-    if (sql == null || sql.trim().isEmpty()) {
-      throw new Exception("Invalid SQL");
+  }
+
+  // One INSERT with a VALUES tuple per row, as reWriteBatchedInserts would send
+  private int executeMultiRow(String sql, List<Object[]> chunk, int rowsPerStatement, Keys keys)
+      throws Exception
+  {
+    Matcher m = MULTI_ROW_INSERT.matcher(sql);
+    m.matches();
+    int columns = placeholders(m.group(2));
+    for (Object[] row : chunk) {
+      if (row.length != columns) {
+        throw new Exception("Batch row has " + row.length + " values, expected " + columns);
+      }
     }
 
-    PreparedStatement ps = this.connection.prepareStatement(sql);
-    for (int i = 0; i < params.length; i++) {
-      ps.setObject(i + 1, params[i]);
+    int count = 0;
+    int full = chunk.size() / rowsPerStatement;
+    int rest = chunk.size() % rowsPerStatement;
+    if (full > 0) {
+      String multi = multiRowSql(m, rowsPerStatement);
+      PreparedStatement ps = prepare(multi, keys != null);
+      try {
+        for (int g = 0; g < full; g++) {
+          bindRows(ps, chunk, g * rowsPerStatement, rowsPerStatement, columns);
+          if (keys == null) {
+            ps.addBatch();
+          } else {
+            // Drivers differ on keys after executeBatch, so each statement runs on its own
+            count += ps.executeUpdate();
+            readKeys(ps, keys);
+          }
+        }
+        if (keys == null) count += sum(ps.executeBatch());
+        release(cacheKey(multi, keys != null), ps);
+      } catch (Exception e) {
+        closeQuietly(ps);
+        throw e;
+      }
     }
-    ResultSet rs = ps.executeQuery();
+    if (rest > 0) {
+      // Not cached: every remainder size is a different SQL text
+      PreparedStatement ps = prepare(multiRowSql(m, rest), keys != null);
+      try {
+        bindRows(ps, chunk, full * rowsPerStatement, rest, columns);
+        count += ps.executeUpdate();
+        if (keys != null) readKeys(ps, keys);
+      } finally {
+        closeQuietly(ps);
+      }
+    }
+    return count;
+  }
 
-    Recordset result = new Recordset();
-    ResultSetMetaData meta = rs.getMetaData();
-    int columnCount = meta.getColumnCount();
+  private static void bindRows(PreparedStatement ps, List<Object[]> chunk, int from, int rows, int columns)
+      throws SQLException
+  {
+    int index = 1;
+    for (int r = from; r < from + rows; r++) {
+      Object[] row = chunk.get(r);
+      for (int c = 0; c < columns; c++) {
+        ps.setObject(index++, row[c]);
+      }
+    }
+  }
 
-    while (rs.next()) {
-      Record row = new Record();
-      for (int i = 1; i <= columnCount; i++) {
-        row.put(meta.getColumnName(i), rs.getObject(i));
+  private static String multiRowSql(Matcher m, int rows)
+  {
+    StringBuilder multi = new StringBuilder(m.group(1));
+    for (int r = 0; r < rows; r++) {
+      if (r > 0) multi.append(", ");
+      multi.append(m.group(2));
+    }
+    return multi.append(m.group(3)).toString();
+  }
+
+  // Rows per multi-row INSERT for this dialect, bounded by its limit on bind parameters; 0 for a JDBC batch
+  private int multiRowLimit(String sql)
+      throws SQLException
+  {
+    Matcher m = MULTI_ROW_INSERT.matcher(sql);
+    if (!m.matches() || RETURNING.matcher(sql).find() || UPSERT.matcher(sql).find()) return 0;
+
+    String product = product();
+    int maxParams;
+    int maxRows = Integer.MAX_VALUE;
+    if (product.contains("postgresql") || product.contains("h2")) {
+      maxParams = 32767;
+    } else if (product.contains("mysql") || product.contains("mariadb")) {
+      maxParams = 65535;
+    } else if (product.contains("sqlite")) {
+      maxParams = 999;
+    } else if (product.contains("sql server")) {
+      maxParams = 2100;
+      maxRows = 1000;
+    } else {
+      return 0;
+    }
+    return Math.min(maxParams / placeholders(m.group(2)), maxRows);
+  }
+
+  private static int placeholders(String tuple)
+  {
+    int count = 0;
+    for (int i = 0; i < tuple.length(); i++) {
+      if (tuple.charAt(i) == '?') count++;
+    }
+    return count;
+  }
+
+  // Drivers that do not know the row counts report SUCCESS_NO_INFO, and so does the chunk
+  private static int sum(int[] counts)
+  {
+    int total = 0;
+    for (int count : counts) {
+      if (count == Statement.SUCCESS_NO_INFO) return Statement.SUCCESS_NO_INFO;
+      total += count;
+    }
+    return total;
+  }
+
+  /** Runs an INSERT and returns the key generated for it; 0 when no row was inserted. */
+  public long insert(String sql, Object... params)
+      throws Exception
+  {
+    check(sql);
+    // An explicit RETURNING clause already names what comes back
+    boolean returning = RETURNING.matcher(sql).find();
+    PreparedStatement ps = prepare(sql, !returning);
+    try {
+      bind(ps, params);
+      long start = System.nanoTime();
+      long key = 0;
+      if (returning) {
+        try (ResultSet rs = ps.executeQuery()) {
+          if (rs.next()) key = rs.getLong(1);
+        }
+      } else {
+        ps.executeUpdate();
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+          if (rs.next()) key = rs.getLong(1);
+        }
       }
-      result.add(row);
+      timed(sql, params, start);
+      release(cacheKey(sql, !returning), ps);
+      return key;
+    } catch (Exception e) {
+      closeQuietly(ps);
+      throw e;
     }
+  }
 
-    rs.close();
-    ps.close();
-    return result;
+  /** Inserts one row per parameter array in one transaction; returns the keys in row order. */
+  public long[] insertBatch(String sql, Iterable<Object[]> rows)
+      throws Exception
+  {
+    check(sql);
+    String product = product();
+    boolean multiRowKeys = product.contains("postgresql") || product.contains("h2")
+      || product.contains("mysql") || product.contains("mariadb");
+    int rowsPerStatement = multiRowKeys ? Math.min(multiRowLimit(sql), DEFAULT_BATCH_SIZE) : 0;
+    boolean ownTransaction = this.connection.getAutoCommit();
+    if (ownTransaction) this.connection.setAutoCommit(false);
+    Keys keys = new Keys();
+    try {
+      if (rowsPerStatement > 1) {
+        ArrayList<Object[]> chunk = new ArrayList<>(DEFAULT_BATCH_SIZE);
+        for (Object[] row : rows) {
+          chunk.add(row);
+          if (chunk.size() == DEFAULT_BATCH_SIZE) {
+            executeChunk(sql, chunk, rowsPerStatement, keys);
+            chunk.clear();
+          }
+        }
+        if (!chunk.isEmpty()) {
+          executeChunk(sql, chunk, rowsPerStatement, keys);
+        }
+      } else {
+        // SQL Server, SQLite and Oracle only report the last key of a batch; upserts may
+        // touch the same row twice, which a single multi-row statement rejects
+        for (Object[] row : rows) {
+          keys.add(insert(sql, row));
+        }
+      }
+      if (ownTransaction) this.connection.commit();
+    } catch (Exception e) {
+      if (ownTransaction) {
+        try { this.connection.rollback(); } catch (SQLException ignored) {}
+      }
+      throw e;
+    } finally {
+      if (ownTransaction) this.connection.setAutoCommit(true);
+    }
+    return keys.toArray();
   }
 
-  public Cursor cursor(String sql, Object... params) throws Exception {
-    if (this.connection == null || this.connection.isClosed()) {
-      throw new Exception("Connection not available");
+  /** Column whose generated value insert and insertBatch return (default "id"). */
+  public void setKeyColumn(String column)
+  {
+    if (column == null || column.trim().isEmpty()) {
+      throw new IllegalArgumentException("Invalid key column");
     }
-    if (sql == null || sql.trim().isEmpty()) {
-      throw new Exception("Invalid SQL");
+    this.keyColumn = column;
+    // Statements prepared for the old column must not be reused
+    this.statements.entrySet().removeIf(entry -> {
+      if (!entry.getKey().startsWith(KEYS)) return false;
+      closeQuietly(entry.getValue());
+      return true;
+    });
+  }
+
+  public String getKeyColumn()
+  {
+    return this.keyColumn;
+  }
+
+  private static void readKeys(PreparedStatement ps, Keys keys)
+      throws SQLException
+  {
+    try (ResultSet rs = ps.getGeneratedKeys()) {
+      while (rs.next()) {
+        keys.add(rs.getLong(1));
+      }
     }
+  }
 
-    PreparedStatement ps = this.connection.prepareStatement(sql);
-    for (int i = 0; i < params.length; i++) {
-      ps.setObject(i + 1, params[i]);
+  private static final class Keys {
+    private long[] values = new long[64];
+    private int size;
+
+    void add(long key) {
+      if (this.size == this.values.length) {
+        this.values = Arrays.copyOf(this.values, this.size * 2);
+      }
+      this.values[this.size++] = key;
+    }
+
+    long[] toArray() {
+      return Arrays.copyOf(this.values, this.size);
     }
-    ResultSet rs = ps.executeQuery();
-    return new Cursor(rs, ps);
   }
 
+  /** @deprecated a second round trip, bound to a sequence named SEQ on Oracle; use insert(). */
+  @Deprecated
   public long lastInsertId()
       throws Exception
   {
-    String dbProduct = this.connection
-      .getMetaData()
-      .getDatabaseProductName()
-      .toLowerCase();
+    String dbProduct = product();
 
     String query;
 
@@ -196,14 +1197,128 @@ public class Database
       throw new Exception("Unsupported database: " + dbProduct);
     }
 
-    PreparedStatement ps = this.connection.prepareStatement(query);
+    PreparedStatement ps = prepare(query);
     ResultSet rs = ps.executeQuery();
     long id = 0;
     if (rs.next()) {
       id = rs.getLong(1);
     }
     rs.close();
-    ps.close();
+    release(query, ps);
     return id;
   }
+
+  /** Idle prepared statements kept per connection, least recently used out first; 0 disables the cache. */
+  public void setStatementCacheSize(int size)
+  {
+    if (size < 0) {
+      throw new IllegalArgumentException("Statement cache size must not be negative");
+    }
+    this.statementCacheSize = size;
+    while (this.statements.size() > size) {
+      Iterator<PreparedStatement> eldest = this.statements.values().iterator();
+      closeQuietly(eldest.next());
+      eldest.remove();
+    }
+  }
+
+  public int getStatementCacheSize()
+  {
+    return this.statementCacheSize;
+  }
+
+  public long statementCacheHits()
+  {
+    return this.statementCacheHits;
+  }
+
+  public long statementCacheMisses()
+  {
+    return this.statementCacheMisses;
+  }
+
+  private void check(String sql) throws Exception
+  {
+    if (this.connection == null || this.connection.isClosed()) {
+      throw new Exception("Connection not available");
+    }
+    if (sql == null || sql.trim().isEmpty()) {
+      throw new Exception("Invalid SQL");
+    }
+  }
+
+  private static void bind(PreparedStatement ps, Object[] params) throws SQLException
+  {
+    for (int i = 0; i < params.length; i++) {
+      ps.setObject(i + 1, params[i]);
+    }
+  }
+
+  // Takes the statement out of the cache, or prepares a new one
+  private PreparedStatement prepare(String sql) throws SQLException
+  {
+    return prepare(sql, false);
+  }
+
+  private PreparedStatement prepare(String sql, boolean keys) throws SQLException
+  {
+    PreparedStatement ps = this.statements.remove(cacheKey(sql, keys));
+    if (ps != null && !ps.isClosed()) {
+      this.statementCacheHits++;
+      return ps;
+    }
+    this.statementCacheMisses++;
+    if (!keys) {
+      return this.connection.prepareStatement(sql);
+    }
+    String product = product();
+    if (product.contains("mysql") || product.contains("mariadb") || product.contains("sqlite")) {
+      // These return the auto-increment value whatever the column is called
+      return this.connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+    }
+    // PostgreSQL would otherwise return every column, Oracle the ROWID
+    return this.connection.prepareStatement(sql, new String[] {this.keyColumn});
+  }
+
+  private static String cacheKey(String sql, boolean keys)
+  {
+    return keys ? KEYS + sql : sql;
+  }
+
+  private String product() throws SQLException
+  {
+    if (this.product == null) {
+      this.product = this.connection.getMetaData().getDatabaseProductName().toLowerCase();
+    }
+    return this.product;
+  }
+
+  // Puts a statement back with its parameters cleared; closes it when it cannot be kept
+  void release(String sql, PreparedStatement ps)
+  {
+    try {
+      if (this.statementCacheSize == 0 || ps.isClosed() || this.statements.containsKey(sql)) {
+        closeQuietly(ps);
+        return;
+      }
+      ps.clearParameters();
+      this.statements.put(sql, ps);
+    } catch (SQLException e) {
+      closeQuietly(ps);
+    }
+  }
+
+  private void closeStatements()
+  {
+    for (PreparedStatement ps : this.statements.values()) {
+      closeQuietly(ps);
+    }
+    this.statements.clear();
+  }
+
+  private static void closeQuietly(PreparedStatement ps)
+  {
+    if (ps == null) return;
+    try { ps.close(); } catch (SQLException e) {}
+  }
 }
@@ -0,0 +1,203 @@
+package com.example.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with percentiles over a rotating time window.
+ *
+ * Values are kept in microseconds in log-linear buckets: 16 sub-buckets per
+ * power of two, so every reported percentile is within 6.25% of the recorded
+ * value. The window is split into {@link #SLOTS} intervals; a slot is replaced
+ * by an empty one the first time it is written in a new interval, so
+ * percentiles and max describe the last minute while {@code count} and
+ * {@code sum} are cumulative, as in a Prometheus summary.
+ *
+ * {@link #recordNanos} takes no locks and never waits: it is a few atomic
+ * increments, and the first recording of an interval swaps in the new slot
+ * with a CAS. That slot is the only allocation, once per interval.
+ */
+public class LatencyHistogram {
+    public static final long WINDOW_SECONDS = 60;
+    public static final int SLOTS = 6;
+    /** Quantiles written by {@link #writeSummary}. */
+    public static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values from 2^27 us (about 134 s) up share the last bucket; max stays exact
+    private static final int MAX_EXPONENT = 27;
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final long SLOT_NANOS = TimeUnit.SECONDS.toNanos(WINDOW_SECONDS) / SLOTS;
+    // nanoTime may be negative; intervals are counted from class initialization so they never are
+    private static final long ORIGIN = System.nanoTime();
+
+    private final AtomicReferenceArray<Slot> slots = new AtomicReferenceArray<>(SLOTS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < SLOTS; i++) {
+            slots.set(i, new Slot(-1));
+        }
+    }
+
+    public void recordNanos(long nanos) {
+        record(nanos, currentInterval());
+    }
+
+    // The interval is a parameter so that tests can step through the window
+    void record(long nanos, long interval) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int index = (int) (interval % SLOTS);
+        Slot slot = slots.get(index);
+        if (slot.interval < interval) {
+            slot = rotate(index, slot, interval);
+        }
+
+        long micros = nanos / 1000;
+        slot.counts.incrementAndGet(bucket(micros));
+        long max = slot.maxNanos.get();
+        while (nanos > max && !slot.maxNanos.compareAndSet(max, nanos)) {
+            max = slot.maxNanos.get();
+        }
+        count.increment();
+        sumNanos.add(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getSumSeconds() {
+        return sumNanos.sum() / 1e9;
+    }
+
+    /** Writes the samples of summary {@code name} from a fresh snapshot. */
+    public void writeSummary(PrometheusWriter out, String name, String labels) {
+        writeSummary(out, name, labels, snapshot());
+    }
+
+    /**
+     * Writes the quantile, {@code _sum} and {@code _count} samples of summary
+     * {@code name}; {@code snapshot} must have been taken from this histogram.
+     */
+    public void writeSummary(PrometheusWriter out, String name, String labels, Snapshot snapshot) {
+        for (double quantile : QUANTILES) {
+            out.sample(name, PrometheusWriter.label(labels, "quantile", PrometheusWriter.format(quantile)),
+                       snapshot.quantile(quantile));
+        }
+        out.sample(name + "_sum", labels, getSumSeconds());
+        out.sample(name + "_count", labels, getCount());
+    }
+
+    /** Merges the slots of the current window; called at scrape time only. */
+    public Snapshot snapshot() {
+        return snapshot(currentInterval());
+    }
+
+    Snapshot snapshot(long current) {
+        long[] merged = new long[BUCKETS];
+        long total = 0;
+        long maxNanos = 0;
+        for (int index = 0; index < SLOTS; index++) {
+            Slot slot = slots.get(index);
+            long interval = slot.interval;
+            if (interval < 0 || current - interval >= SLOTS) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                long value = slot.counts.get(i);
+                merged[i] += value;
+                total += value;
+            }
+            maxNanos = Math.max(maxNanos, slot.maxNanos.get());
+        }
+        return new Snapshot(merged, total, maxNanos);
+    }
+
+    // Only one of the recorders racing to replace a stale slot wins; the others record into its slot
+    private Slot rotate(int index, Slot stale, long interval) {
+        Slot fresh = new Slot(interval);
+        return slots.compareAndSet(index, stale, fresh) ? fresh : slots.get(index);
+    }
+
+    private static long currentInterval() {
+        return (System.nanoTime() - ORIGIN) / SLOT_NANOS;
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    // Highest value in microseconds that falls into the bucket
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    private static final class Slot {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final long interval;
+
+        Slot(long interval) {
+            this.interval = interval;
+        }
+    }
+
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long total;
+        private final long maxNanos;
+
+        Snapshot(long[] counts, long total, long maxNanos) {
+            this.counts = counts;
+            this.total = total;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return total;
+        }
+
+        public double getMaxSeconds() {
+            return maxNanos / 1e9;
+        }
+
+        /** Value at quantile {@code q} (0..1) in seconds, or NaN when the window is empty. */
+        public double quantile(double q) {
+            if (total == 0) {
+                return Double.NaN;
+            }
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    // Never report more than the largest value recorded, and the open-ended last bucket as that value
+                    return i == counts.length - 1 ? getMaxSeconds() : Math.min(upperBound(i) / 1e6, getMaxSeconds());
+                }
+            }
+            return getMaxSeconds();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Application-wide list of metric sources scraped by {@code GET /metrics}.
+ *
+ * Sources keep their own counters and only render them on a scrape, so
+ * registering one costs nothing on the request path.
+ */
+public class MetricsRegistry {
+    private static final Logger LOGGER = Logger.getLogger(MetricsRegistry.class.getName());
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    @FunctionalInterface
+    public interface Source {
+        void writeTo(PrometheusWriter out);
+    }
+
+    private final List<Source> sources = new CopyOnWriteArrayList<>();
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public void register(Source source) {
+        sources.add(source);
+    }
+
+    public void unregister(Source source) {
+        sources.remove(source);
+    }
+
+    public String scrape() {
+        PrometheusWriter out = new PrometheusWriter();
+        for (Source source : sources) {
+            try {
+                source.writeTo(out);
+            } catch (RuntimeException e) {
+                // One failing source must not hide the others
+                LOGGER.log(Level.WARNING, "Metrics source failed", e);
+            }
+        }
+        return out.toString();
+    }
+}
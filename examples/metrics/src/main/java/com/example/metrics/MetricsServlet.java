@@ -0,0 +1,26 @@
+package com.example.metrics;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Serves the metrics of {@link MetricsRegistry} in the Prometheus text format;
+ * mapped to {@code /metrics} in {@code web.xml}.
+ */
+public class MetricsServlet extends HttpServlet {
+    
+    private static final long serialVersionUID = 1L;
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        response.setContentType(PrometheusWriter.CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-store");
+        response.getWriter().write(MetricsRegistry.getInstance().scrape());
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void reportsQuantilesWithinTheBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * MILLIS, 0);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(0);
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(0.5, snapshot.quantile(0.5), 0.5 * 0.0625);
+        assertEquals(0.99, snapshot.quantile(0.99), 0.99 * 0.0625);
+        assertEquals(1.0, snapshot.getMaxSeconds(), 1e-9);
+        assertTrue(snapshot.quantile(0.999) <= snapshot.getMaxSeconds());
+    }
+
+    @Test
+    void forgetsSlotsOnceTheyLeaveTheWindow() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5 * MILLIS, 0);
+
+        assertEquals(1, histogram.snapshot(LatencyHistogram.SLOTS - 1).getCount());
+
+        LatencyHistogram.Snapshot expired = histogram.snapshot(LatencyHistogram.SLOTS);
+        assertEquals(0, expired.getCount());
+        assertTrue(Double.isNaN(expired.quantile(0.5)));
+        assertEquals(0.0, expired.getMaxSeconds());
+        // count and sum are cumulative, as in a Prometheus summary
+        assertEquals(1, histogram.getCount());
+        assertEquals(0.005, histogram.getSumSeconds(), 1e-9);
+    }
+
+    @Test
+    void replacesAStaleSlotInsteadOfAddingToIt() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(900 * MILLIS, 0);
+        histogram.record(2 * MILLIS, 1);
+        // Same slot as interval 0, one window later
+        histogram.record(3 * MILLIS, LatencyHistogram.SLOTS);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(LatencyHistogram.SLOTS);
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0.003, snapshot.getMaxSeconds(), 1e-9);
+        assertEquals(3, histogram.getCount());
+    }
+
+    @Test
+    void keepsEveryRecordingWhenThreadsRotateTheSameSlot() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(MILLIS, 0);
+        int threads = 4;
+        int perThread = 10_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> recorders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread recorder = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    histogram.record(MILLIS, LatencyHistogram.SLOTS);
+                }
+            });
+            recorder.start();
+            recorders.add(recorder);
+        }
+        start.countDown();
+        for (Thread recorder : recorders) {
+            recorder.join();
+        }
+
+        assertEquals(threads * perThread, histogram.snapshot(LatencyHistogram.SLOTS).getCount());
+        assertEquals(threads * perThread + 1, histogram.getCount());
+    }
+
+    @Test
+    void recordsNegativeDurationsAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5, 0);
+
+        assertEquals(0.0, histogram.snapshot(0).getMaxSeconds());
+        assertEquals(0.0, histogram.getSumSeconds());
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.todo.benchmarks;
+
+import com.example.todo.model.Todo;
+import com.example.todo.repository.TodoMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory H2 database with the todos schema, for the benchmarks that measure
+ * the Java side of a call (JDBI, mapping, validation) with plain SQL that runs
+ * the same on any database.
+ *
+ * The application's statements are PostgreSQL-specific ({@code to_tsquery} on
+ * the tsvector column, {@code = ANY(?)}, {@code RETURNING}, row locks) and H2
+ * has nothing of PostgreSQL's planner or round trips, so benchmarks of the
+ * repository and the servlet run on {@link PostgresDatabase} instead.
+ */
+public final class BenchmarkDatabase {
+    public static final String COLUMNS =
+        "id, title, description, completed, created_at, updated_at, completed_at, priority, category, version";
+    
+    private static final String[] PRIORITIES = {"LOW", "MEDIUM", "HIGH"};
+    private static final String[] CATEGORIES = {"work", "personal", "home", "errands"};
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+    
+    private BenchmarkDatabase() {}
+    
+    public static Jdbi create(int rows) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:todo" + DATABASES.incrementAndGet() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        
+        Jdbi jdbi = Jdbi.create(dataSource)
+                        .installPlugin(new SqlObjectPlugin())
+                        .registerRowMapper(Todo.class, new TodoMapper());
+        
+        jdbi.useHandle(handle -> {
+            handle.execute(
+                "CREATE TABLE todos (" +
+                "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "title VARCHAR(255) NOT NULL, " +
+                "description VARCHAR(1000), " +
+                "completed BOOLEAN DEFAULT FALSE, " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "updated_at TIMESTAMP, " +
+                "completed_at TIMESTAMP, " +
+                "priority VARCHAR(10) DEFAULT 'MEDIUM', " +
+                "category VARCHAR(100), " +
+                "version BIGINT NOT NULL DEFAULT 0)");
+            handle.execute("CREATE INDEX idx_todos_created_at_id ON todos (created_at, id)");
+            handle.execute("CREATE INDEX idx_todos_completed ON todos (completed, created_at, id)");
+            handle.execute("CREATE INDEX idx_todos_category ON todos (category, created_at, id)");
+            
+            PreparedBatch batch = handle.prepareBatch(
+                "INSERT INTO todos (title, description, completed, created_at, completed_at, priority, category) " +
+                "VALUES (:title, :description, :completed, :createdAt, :completedAt, :priority, :category)");
+            for (Todo todo : todos(rows)) {
+                batch.bindBean(todo).add();
+            }
+            if (rows > 0) {
+                batch.execute();
+            }
+        });
+        return jdbi;
+    }
+    
+    public static void shutdown(Jdbi jdbi) {
+        jdbi.useHandle(handle -> handle.execute("DROP ALL OBJECTS"));
+    }
+    
+    // Deterministic sample data, so every run measures the same rows
+    public static List<Todo> todos(int count) {
+        List<Todo> todos = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Todo todo = new Todo();
+            todo.setId((long) i);
+            todo.setTitle("Todo number " + i);
+            todo.setDescription(i % 2 == 0 ? "Description of todo " + i + " with a few more words" : null);
+            todo.setCreatedAt(EPOCH.plusMinutes(i));
+            todo.setCompleted(i % 3 == 0);
+            todo.setCompletedAt(todo.isCompleted() ? EPOCH.plusMinutes(i + 30) : null);
+            todo.setPriority(PRIORITIES[i % PRIORITIES.length]);
+            todo.setCategory(CATEGORIES[i % CATEGORIES.length]);
+            todo.setVersion(0L);
+            todos.add(todo);
+        }
+        return todos;
+    }
+}
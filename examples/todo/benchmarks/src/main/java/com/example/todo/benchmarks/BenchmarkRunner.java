@@ -0,0 +1,41 @@
+package com.example.todo.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar: runs JMH with the GC profiler and writes the
+ * results as JSON, so runs of different releases can be compared.
+ *
+ * Accepts the usual JMH command line, e.g. {@code java -jar benchmarks.jar Mapping -rff mapping.json}.
+ * The benchmarks that need PostgreSQL are left out unless {@code -Djdbc.url}
+ * is given; forked JVMs inherit the property.
+ */
+public class BenchmarkRunner {
+    private static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+    private static final String POSTGRES_BENCHMARKS = "\\.(RepositoryBenchmark|ServletBenchmark)\\.";
+    
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListProfilers() || cli.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cli)
+               .addProfiler(GCProfiler.class)
+               .resultFormat(ResultFormatType.JSON)
+               .result(cli.getResult().orElse(DEFAULT_RESULT_FILE));
+        if (!PostgresDatabase.isConfigured()) {
+            System.out.println("No -D" + PostgresDatabase.URL_PROPERTY + ": skipping RepositoryBenchmark and ServletBenchmark");
+            builder.exclude(POSTGRES_BENCHMARKS);
+        }
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.todo.benchmarks;
+
+import com.example.metrics.LatencyFilter;
+import com.example.metrics.MetricsRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of {@link LatencyFilter}: recording alone, recording from
+ * several threads into the same histogram, and a full pass through
+ * {@code doFilter} with an empty chain. {@code gc.alloc.rate.norm} should
+ * stay at zero.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatencyFilterBenchmark {
+    private static final FilterChain EMPTY_CHAIN = (request, response) -> {};
+
+    private LatencyFilter filter;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private MetricsRegistry registry;
+
+    @Setup
+    public void setup() {
+        filter = new LatencyFilter();
+        registry = new MetricsRegistry();
+        registry.register(filter);
+
+        // Wrappers instead of the proxy stubs, whose reflective calls would allocate
+        request = new HttpServletRequestWrapper(ServletStubs.get("/123", Map.of())) {
+            @Override
+            public Object getAttribute(String name) {
+                return "/api/todos/{id}";
+            }
+
+            @Override
+            public String getMethod() {
+                return "GET";
+            }
+
+            @Override
+            public boolean isAsyncStarted() {
+                return false;
+            }
+        };
+        response = new HttpServletResponseWrapper(ServletStubs.response().proxy) {
+            @Override
+            public int getStatus() {
+                return 200;
+            }
+        };
+    }
+
+    @Benchmark
+    public void record() {
+        filter.record(request, 200, 1_250_000);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        filter.record(request, 200, 1_250_000);
+    }
+
+    @Benchmark
+    public void doFilter() throws Exception {
+        filter.doFilter(request, response, EMPTY_CHAIN);
+    }
+
+    @Benchmark
+    public String scrape() {
+        return registry.scrape();
+    }
+}
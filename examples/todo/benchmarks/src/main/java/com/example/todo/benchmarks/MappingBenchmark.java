@@ -0,0 +1,63 @@
+package com.example.todo.benchmarks;
+
+import com.example.todo.model.Todo;
+import com.example.todo.repository.TodoMapper;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.mapper.reflect.BeanMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result set to {@link Todo} mapping: the precomputed {@link TodoMapper}
+ * against JDBI's reflective {@link BeanMapper}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int rows;
+    
+    @Param({"precomputed", "bean"})
+    private String mapper;
+    
+    private Jdbi jdbi;
+    private RowMapper<Todo> rowMapper;
+    
+    @Setup
+    public void setup() {
+        jdbi = BenchmarkDatabase.create(rows);
+        rowMapper = "bean".equals(mapper) ? BeanMapper.of(Todo.class) : new TodoMapper();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.shutdown(jdbi);
+    }
+    
+    @Benchmark
+    public List<Todo> mapAll() {
+        return jdbi.withHandle(handle ->
+            handle.createQuery("SELECT " + BenchmarkDatabase.COLUMNS + " FROM todos ORDER BY id")
+                  .map(rowMapper)
+                  .list()
+        );
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.todo.benchmarks;
+
+import com.example.metrics.MetricsRegistry;
+import com.example.todo.repository.InstrumentedDataSource;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a pool checkout with and without {@link InstrumentedDataSource},
+ * i.e. what the wait/hold timing and caller tracking add to every query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolInstrumentationBenchmark {
+    private JdbcConnectionPool pool;
+    private InstrumentedDataSource instrumented;
+    private MetricsRegistry registry;
+
+    @Setup
+    public void setup() {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1", "sa", "");
+        instrumented = new InstrumentedDataSource(pool, pool.getMaxConnections());
+        registry = new MetricsRegistry();
+        registry.register(instrumented);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.dispose();
+    }
+
+    @Benchmark
+    public boolean rawCheckout() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            return connection.getAutoCommit();
+        }
+    }
+
+    @Benchmark
+    public boolean instrumentedCheckout() throws SQLException {
+        try (Connection connection = instrumented.getConnection()) {
+            return connection.getAutoCommit();
+        }
+    }
+
+    @Benchmark
+    public String scrape() {
+        return registry.scrape();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.todo.benchmarks;
+
+import com.example.todo.model.Todo;
+import com.example.todo.repository.TodoMapper;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+
+import java.sql.SQLException;
+
+/**
+ * The todos schema of the README in a scratch schema of the PostgreSQL
+ * database named by {@code -Djdbc.url}, for the benchmarks that run the
+ * application's own SQL.
+ *
+ * Connections come from a DBCP pool like Tomcat's, and every connection's
+ * search path is set to {@link #SCHEMA}, which is dropped and recreated at
+ * setup and dropped again at teardown. The URL carries the credentials, e.g.
+ * {@code jdbc:postgresql://localhost:5432/todo_db?user=todo_user&password=todo_password}.
+ */
+public final class PostgresDatabase implements AutoCloseable {
+    public static final String URL_PROPERTY = "jdbc.url";
+    public static final String SCHEMA = "todo_benchmarks";
+
+    private final BasicDataSource dataSource;
+    private final Jdbi jdbi;
+
+    private PostgresDatabase(BasicDataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbi = Jdbi.create(dataSource)
+                        .installPlugin(new SqlObjectPlugin())
+                        .registerRowMapper(Todo.class, new TodoMapper());
+    }
+
+    public static boolean isConfigured() {
+        return System.getProperty(URL_PROPERTY) != null;
+    }
+
+    public static PostgresDatabase create(int rows) {
+        String url = System.getProperty(URL_PROPERTY);
+        if (url == null) {
+            throw new IllegalStateException("This benchmark runs the application's SQL and needs PostgreSQL: pass -D"
+                                            + URL_PROPERTY + "=jdbc:postgresql://host:5432/db?user=...&password=...");
+        }
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setDriverClassName("org.postgresql.Driver");
+        dataSource.setUrl(url);
+        dataSource.setDefaultSchema(SCHEMA);
+        dataSource.setMaxTotal(8);
+
+        PostgresDatabase database = new PostgresDatabase(dataSource);
+        database.jdbi.useHandle(handle -> {
+            handle.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            handle.execute("CREATE SCHEMA " + SCHEMA);
+            handle.execute(
+                "CREATE TABLE " + SCHEMA + ".todos (" +
+                "id BIGSERIAL PRIMARY KEY, " +
+                "title VARCHAR(255) NOT NULL, " +
+                "description TEXT, " +
+                "completed BOOLEAN DEFAULT FALSE, " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "updated_at TIMESTAMP, " +
+                "completed_at TIMESTAMP, " +
+                "priority VARCHAR(20) DEFAULT 'MEDIUM' CHECK (priority IN ('LOW', 'MEDIUM', 'HIGH')), " +
+                "category VARCHAR(100), " +
+                "version BIGINT NOT NULL DEFAULT 0, " +
+                "search_vector TSVECTOR GENERATED ALWAYS AS (" +
+                "setweight(to_tsvector('simple', coalesce(title, '')), 'A') || " +
+                "setweight(to_tsvector('simple', coalesce(description, '')), 'B')) STORED)");
+            handle.execute("CREATE INDEX idx_todos_created_at_id ON " + SCHEMA + ".todos (created_at DESC, id DESC)");
+            handle.execute("CREATE INDEX idx_todos_completed_created_at ON " + SCHEMA + ".todos (completed, created_at DESC, id DESC)");
+            handle.execute("CREATE INDEX idx_todos_category_created_at ON " + SCHEMA + ".todos (category, created_at DESC, id DESC)");
+            handle.execute("CREATE INDEX idx_todos_priority_created_at ON " + SCHEMA + ".todos (priority, created_at DESC, id DESC)");
+            handle.execute("CREATE INDEX idx_todos_search ON " + SCHEMA + ".todos USING GIN (search_vector)");
+
+            PreparedBatch batch = handle.prepareBatch(
+                "INSERT INTO " + SCHEMA + ".todos (title, description, completed, created_at, completed_at, priority, category) " +
+                "VALUES (:title, :description, :completed, :createdAt, :completedAt, :priority, :category)");
+            for (Todo todo : BenchmarkDatabase.todos(rows)) {
+                batch.bindBean(todo).add();
+            }
+            if (rows > 0) {
+                batch.execute();
+            }
+            // Fresh statistics, so the planner picks the plans it would pick in production
+            handle.execute("ANALYZE " + SCHEMA + ".todos");
+        });
+        return database;
+    }
+
+    public Jdbi jdbi() {
+        return jdbi;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            jdbi.useHandle(handle -> handle.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE"));
+        } finally {
+            dataSource.close();
+        }
+    }
+}
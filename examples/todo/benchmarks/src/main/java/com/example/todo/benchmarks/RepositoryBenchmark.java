@@ -0,0 +1,92 @@
+package com.example.todo.benchmarks;
+
+import com.example.todo.model.Todo;
+import com.example.todo.repository.KeysetCursor;
+import com.example.todo.repository.TodoQuery;
+import com.example.todo.repository.TodoRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TodoRepository} read paths against PostgreSQL (see
+ * {@link PostgresDatabase}), so the times include the production SQL, its
+ * plans and the round trips. Skipped by {@link BenchmarkRunner} without
+ * {@code -Djdbc.url}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+    @Param({"10000"})
+    private int rows;
+    
+    private PostgresDatabase database;
+    private TodoRepository repository;
+    private KeysetCursor middle;
+    
+    @Setup
+    public void setup() {
+        database = PostgresDatabase.create(rows);
+        repository = new TodoRepository(database.jdbi());
+        middle = KeysetCursor.of(repository.findById((long) rows / 2).orElseThrow());
+    }
+    
+    @TearDown
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+    
+    @Benchmark
+    public Optional<Todo> findByIdCached() {
+        return repository.findById((long) rows / 2);
+    }
+    
+    @Benchmark
+    public List<Todo> findAll() {
+        return repository.findAll();
+    }
+    
+    @Benchmark
+    public List<Todo> findFilteredPage() {
+        return repository.find(new TodoQuery().completed(false).category("work").limit(50));
+    }
+    
+    @Benchmark
+    public List<Todo> findPageAfterCursor() {
+        return repository.find(new TodoQuery().completed(false).after(middle).limit(50));
+    }
+    
+    @Benchmark
+    public List<Todo> searchByRelevance() {
+        return repository.find(new TodoQuery().search("number 42").limit(50));
+    }
+    
+    @Benchmark
+    public void streamAll(Blackhole blackhole) {
+        repository.stream(new TodoQuery(), blackhole::consume);
+    }
+    
+    @Benchmark
+    public TodoRepository.Counts countTotalAndCompleted() {
+        return repository.countTotalAndCompleted();
+    }
+}
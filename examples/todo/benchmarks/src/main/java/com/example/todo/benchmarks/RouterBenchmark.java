@@ -0,0 +1,75 @@
+package com.example.todo.benchmarks;
+
+import com.example.todo.servlet.Router;
+import jakarta.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Method and path routing with the same route table as {@code TodoServlet};
+ * {@code gc.alloc.rate.norm} should stay at zero.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+    private Router router;
+    private HttpServletRequest root;
+    private HttpServletRequest byId;
+    private HttpServletRequest toggle;
+    private HttpServletRequest unknown;
+    private long sum;
+    
+    @Setup
+    public void setup() {
+        Router.Handler handler = (req, resp, id) -> sum += id;
+        router = new Router()
+            .add(Router.Method.GET, "/", handler)
+            .add(Router.Method.GET, "/stats", handler)
+            .add(Router.Method.GET, "/stats/cache", handler)
+            .add(Router.Method.GET, "/{id}", handler)
+            .add(Router.Method.POST, "/", handler)
+            .add(Router.Method.POST, "/batch", handler)
+            .add(Router.Method.POST, "/{id}/toggle", handler)
+            .add(Router.Method.PUT, "/{id}", handler)
+            .add(Router.Method.DELETE, "/{id}", handler);
+        root = ServletStubs.get("/", Map.of());
+        byId = ServletStubs.get("/123456", Map.of());
+        toggle = ServletStubs.get("/123456/toggle", Map.of());
+        unknown = ServletStubs.get("/123456/unknown", Map.of());
+    }
+    
+    @Benchmark
+    public boolean root() throws Exception {
+        return router.dispatch(Router.Method.GET, root, null);
+    }
+    
+    @Benchmark
+    public boolean byId() throws Exception {
+        return router.dispatch(Router.Method.GET, byId, null);
+    }
+    
+    @Benchmark
+    public boolean toggle() throws Exception {
+        return router.dispatch(Router.Method.POST, toggle, null);
+    }
+    
+    @Benchmark
+    public boolean unknown() throws Exception {
+        return router.dispatch(Router.Method.GET, unknown, null);
+    }
+}
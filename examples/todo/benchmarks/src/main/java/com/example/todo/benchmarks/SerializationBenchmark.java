@@ -0,0 +1,58 @@
+package com.example.todo.benchmarks;
+
+import com.example.todo.model.Todo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of todo lists, as written by {@code TodoServlet} for
+ * {@code GET /api/todos}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    private int size;
+    
+    private ObjectMapper objectMapper;
+    private List<Todo> todos;
+    
+    @Setup
+    public void setup() {
+        // Same configuration as TodoServlet
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        todos = BenchmarkDatabase.todos(size);
+    }
+    
+    @Benchmark
+    public long writeList() throws IOException {
+        ServletStubs.CountingWriter writer = new ServletStubs.CountingWriter();
+        objectMapper.writeValue(writer, todos);
+        return writer.getCount();
+    }
+    
+    @Benchmark
+    public byte[] writeListAsBytes() throws IOException {
+        return objectMapper.writeValueAsBytes(todos);
+    }
+}
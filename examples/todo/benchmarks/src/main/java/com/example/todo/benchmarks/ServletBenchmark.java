@@ -0,0 +1,99 @@
+package com.example.todo.benchmarks;
+
+import com.example.todo.repository.TodoRepository;
+import com.example.todo.service.TodoService;
+import com.example.todo.servlet.TodoServlet;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code GET /api/todos} end to end through {@code TodoServlet}: parameter
+ * parsing and dispatch in {@code handleGetAll}, the service, the repository on
+ * PostgreSQL (see {@link PostgresDatabase}) and the JSON response. Skipped by
+ * {@link BenchmarkRunner} without {@code -Djdbc.url}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServletBenchmark {
+    @Param({"1000"})
+    private int rows;
+    
+    private PostgresDatabase database;
+    private TodoServlet servlet;
+    private HttpServletRequest listAll;
+    private HttpServletRequest firstPage;
+    private HttpServletRequest filteredPage;
+    private HttpServletRequest streamAll;
+    private HttpServletRequest byId;
+    
+    @Setup
+    public void setup() {
+        database = PostgresDatabase.create(rows);
+        servlet = new TodoServlet(new TodoService(new TodoRepository(database.jdbi())));
+        listAll = ServletStubs.get("/", Map.of());
+        firstPage = ServletStubs.get("/", Map.of("limit", "50"));
+        filteredPage = ServletStubs.get("/", Map.of("completed", "false", "category", "work", "limit", "50"));
+        streamAll = ServletStubs.get("/", Map.of("stream", "true"));
+        byId = ServletStubs.get("/" + (rows / 2), Map.of());
+    }
+    
+    @TearDown
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+    
+    @Benchmark
+    public long listAll() throws ServletException, IOException {
+        return execute(listAll);
+    }
+    
+    @Benchmark
+    public long firstPage() throws ServletException, IOException {
+        return execute(firstPage);
+    }
+    
+    @Benchmark
+    public long filteredPage() throws ServletException, IOException {
+        return execute(filteredPage);
+    }
+    
+    @Benchmark
+    public long streamAll() throws ServletException, IOException {
+        return execute(streamAll);
+    }
+    
+    @Benchmark
+    public long getById() throws ServletException, IOException {
+        return execute(byId);
+    }
+    
+    private long execute(HttpServletRequest request) throws ServletException, IOException {
+        ServletStubs.Response response = ServletStubs.response();
+        servlet.service(request, response.proxy);
+        if (response.getStatus() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.getStatus());
+        }
+        return response.getBodyLength();
+    }
+}
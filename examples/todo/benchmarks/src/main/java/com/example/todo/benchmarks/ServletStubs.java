@@ -0,0 +1,100 @@
+package com.example.todo.benchmarks;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+/**
+ * Minimal request and response stubs for driving {@code TodoServlet} without a
+ * container. Only the methods the servlet calls are implemented; everything
+ * else returns a default value.
+ */
+final class ServletStubs {
+    private ServletStubs() {}
+    
+    static HttpServletRequest get(String pathInfo, Map<String, String> parameters) {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+            ServletStubs.class.getClassLoader(),
+            new Class<?>[] {HttpServletRequest.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getMethod":
+                        return "GET";
+                    case "getPathInfo":
+                        return pathInfo;
+                    case "getParameter":
+                        return parameters.get((String) args[0]);
+                    case "getDateHeader":
+                    case "getIntHeader":
+                        return -1L;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+    }
+    
+    static Response response() {
+        return new Response();
+    }
+    
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        return null;
+    }
+    
+    /** Collects the status and the number of characters written. */
+    static final class Response {
+        private final CountingWriter body = new CountingWriter();
+        private int status = 200;
+        
+        final HttpServletResponse proxy = (HttpServletResponse) Proxy.newProxyInstance(
+            ServletStubs.class.getClassLoader(),
+            new Class<?>[] {HttpServletResponse.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getWriter":
+                        // Jackson closes the writer after each value, so hand out a fresh one
+                        return new PrintWriter(body);
+                    case "setStatus":
+                        status = (Integer) args[0];
+                        return null;
+                    case "getStatus":
+                        return status;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+        
+        int getStatus() { return status; }
+        long getBodyLength() { return body.getCount(); }
+    }
+    
+    /** Discards output but counts it, so the serialization cannot be optimized away. */
+    static final class CountingWriter extends Writer {
+        private long count;
+        
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            count += length;
+        }
+        
+        @Override
+        public void write(String str, int offset, int length) {
+            count += length;
+        }
+        
+        @Override
+        public void flush() {}
+        
+        @Override
+        public void close() {}
+        
+        long getCount() { return count; }
+    }
+}
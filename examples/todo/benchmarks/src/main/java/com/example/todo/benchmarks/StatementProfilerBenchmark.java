@@ -0,0 +1,58 @@
+package com.example.todo.benchmarks;
+
+import com.example.todo.repository.StatementProfiler;
+import org.jdbi.v3.core.Jdbi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A primary-key lookup with and without {@link StatementProfiler} installed
+ * on the JDBI instance, i.e. what statement timing adds to the
+ * cheapest query the application runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementProfilerBenchmark {
+    @Param({"false", "true"})
+    private boolean profiled;
+
+    private Jdbi jdbi;
+
+    @Setup
+    public void setup() {
+        jdbi = BenchmarkDatabase.create(1000);
+        if (profiled) {
+            // The lookup stays far below the slow threshold, so no EXPLAIN connection is ever needed
+            new StatementProfiler(null).install(jdbi);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.shutdown(jdbi);
+    }
+
+    @Benchmark
+    public String findTitle() {
+        return jdbi.withHandle(handle -> handle.createQuery("SELECT title FROM todos WHERE id = :id")
+            .bind("id", 500L)
+            .mapTo(String.class)
+            .one());
+    }
+}
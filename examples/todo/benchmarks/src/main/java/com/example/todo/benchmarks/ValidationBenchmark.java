@@ -0,0 +1,67 @@
+package com.example.todo.benchmarks;
+
+import com.example.todo.model.Todo;
+import com.example.todo.repository.TodoRepository;
+import com.example.todo.service.TodoService;
+import com.example.todo.service.ValidationException;
+import org.jdbi.v3.core.Jdbi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TodoService#validateTodo} for a valid todo and for the rejection path,
+ * which pays for building the exception.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+    private Jdbi jdbi;
+    private TodoService todoService;
+    private Todo valid;
+    private Todo invalid;
+    
+    @Setup
+    public void setup() {
+        jdbi = BenchmarkDatabase.create(0);
+        todoService = new TodoService(new TodoRepository(jdbi));
+        valid = BenchmarkDatabase.todos(1).get(0);
+        invalid = new Todo(valid);
+        invalid.setPriority("URGENT");
+    }
+    
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.shutdown(jdbi);
+    }
+    
+    @Benchmark
+    public Todo validTodo() throws ValidationException {
+        todoService.validateTodo(valid);
+        return valid;
+    }
+    
+    @Benchmark
+    public Object invalidTodo() {
+        try {
+            todoService.validateTodo(invalid);
+            return invalid;
+        } catch (ValidationException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.todo.model;
+
+public class BatchOperation {
+    public static final String CREATE = "create";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+
+    private String op;
+    private Long id;
+    private Todo todo;
+
+    public BatchOperation() {}
+
+    public BatchOperation(String op, Long id, Todo todo) {
+        this.op = op;
+        this.id = id;
+        this.todo = todo;
+    }
+
+    public String getOp() { return op; }
+    public Long getId() { return id; }
+    public Todo getTodo() { return todo; }
+
+    public void setOp(String op) { this.op = op; }
+    public void setId(Long id) { this.id = id; }
+    public void setTodo(Todo todo) { this.todo = todo; }
+}
@@ -0,0 +1,23 @@
+package com.example.todo.model;
+
+public class BatchResult {
+    private final int index;
+    private final String op;
+    private final Long id;
+    private final int status;
+    private final String error;
+
+    public BatchResult(int index, String op, Long id, int status, String error) {
+        this.index = index;
+        this.op = op;
+        this.id = id;
+        this.status = status;
+        this.error = error;
+    }
+
+    public int getIndex() { return index; }
+    public String getOp() { return op; }
+    public Long getId() { return id; }
+    public int getStatus() { return status; }
+    public String getError() { return error; }
+}
@@ -0,0 +1,23 @@
+package com.example.todo.model;
+
+import java.util.List;
+
+public class Page<T> {
+    private final List<T> items;
+    private final int limit;
+    private final String nextCursor;
+
+    public Page(List<T> items, int limit, String nextCursor) {
+        this.items = items;
+        this.limit = limit;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+    public int getLimit() { return limit; }
+    public String getNextCursor() { return nextCursor; }
+
+    public boolean isHasMore() {
+        return nextCursor != null;
+    }
+}
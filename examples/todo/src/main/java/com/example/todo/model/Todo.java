@@ -13,6 +13,7 @@ public class Todo {
     private LocalDateTime completedAt;
     private String priority; // LOW, MEDIUM, HIGH
     private String category;
+    private Long version;
 
     public Todo() {}
 
@@ -24,6 +25,19 @@ public class Todo {
         this.createdAt = LocalDateTime.now();
     }
 
+    public Todo(Todo other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.description = other.description;
+        this.completed = other.completed;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.completedAt = other.completedAt;
+        this.priority = other.priority;
+        this.category = other.category;
+        this.version = other.version;
+    }
+
     // Getters
     public Long getId() { return id; }
     public String getTitle() { return title; }
@@ -34,6 +48,7 @@ public class Todo {
     public LocalDateTime getCompletedAt() { return completedAt; }
     public String getPriority() { return priority; }
     public String getCategory() { return category; }
+    public Long getVersion() { return version; }
 
     // Setters
     public void setId(Long id) { this.id = id; }
@@ -54,6 +69,7 @@ public class Todo {
     public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
     public void setPriority(String priority) { this.priority = priority; }
     public void setCategory(String category) { this.category = category; }
+    public void setVersion(Long version) { this.version = version; }
 
     // Business methods
     public void markCompleted() {
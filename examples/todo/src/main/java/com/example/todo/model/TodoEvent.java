@@ -0,0 +1,39 @@
+package com.example.todo.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A change to the todos table, as delivered on {@code GET /api/todos/events}.
+ *
+ * {@code todo} carries the row after the change when it is known; it is absent
+ * for changes made by other nodes or in batches, and for {@link #RESET}, which
+ * tells clients that events were missed and listings must be reloaded.
+ */
+public class TodoEvent {
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String TOGGLED = "toggled";
+    public static final String DELETED = "deleted";
+    public static final String RESET = "reset";
+
+    private final long sequence;
+    private final String id;
+    private final String type;
+    private final Long todoId;
+    private final Todo todo;
+
+    public TodoEvent(long sequence, String id, String type, Long todoId, Todo todo) {
+        this.sequence = sequence;
+        this.id = id;
+        this.type = type;
+        this.todoId = todoId;
+        this.todo = todo;
+    }
+
+    @JsonIgnore
+    public long getSequence() { return sequence; }
+    public String getId() { return id; }
+    public String getType() { return type; }
+    public Long getTodoId() { return todoId; }
+    public Todo getTodo() { return todo; }
+}
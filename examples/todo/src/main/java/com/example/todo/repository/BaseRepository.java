@@ -2,23 +2,108 @@ package com.example.todo.repository;
 
 import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.mapper.reflect.BeanMapper;
+import org.jdbi.v3.core.statement.Query;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 public abstract class BaseRepository<T, ID> {
+    protected static final int STREAM_FETCH_SIZE = 500;
+    
     protected final Jdbi jdbi;
+    protected final DataSourceRegistry registry;
     protected final String tableName;
     protected final Class<T> entityClass;
+    protected final String columns;
+    protected final RowMapper<T> rowMapper;
+    
+    private EntityCache<ID, T> cache;
+    private UnaryOperator<T> copier;
     
     public BaseRepository(String tableName, Class<T> entityClass) {
-        this.jdbi = DatabaseManager.getInstance().getJdbi();
+        this(tableName, entityClass, "*");
+    }
+    
+    public BaseRepository(String tableName, Class<T> entityClass, String columns) {
+        this(tableName, entityClass, columns, BeanMapper.of(entityClass));
+    }
+    
+    /**
+     * Uses {@code rowMapper} instead of reflective bean mapping for every query
+     * issued by this repository.
+     */
+    public BaseRepository(String tableName, Class<T> entityClass, String columns, RowMapper<T> rowMapper) {
+        this(DatabaseManager.getInstance().getRegistry(), tableName, entityClass, columns, rowMapper);
+    }
+    
+    public BaseRepository(Jdbi jdbi, String tableName, Class<T> entityClass, String columns, RowMapper<T> rowMapper) {
+        this(DataSourceRegistry.of(jdbi), tableName, entityClass, columns, rowMapper);
+    }
+    
+    /**
+     * Writes go to the registry's primary ({@link #jdbi}); reads made through
+     * {@link #readJdbi()} may go to a replica.
+     */
+    public BaseRepository(DataSourceRegistry registry, String tableName, Class<T> entityClass, String columns,
+                          RowMapper<T> rowMapper) {
+        this.registry = registry;
+        this.jdbi = registry.primary();
         this.tableName = tableName;
         this.entityClass = entityClass;
+        this.columns = columns;
+        this.rowMapper = rowMapper;
+    }
+    
+    /**
+     * Turns on the read-through cache for {@link #findById}. Cached entities are
+     * copied on the way in and out, so callers can keep mutating what they get.
+     */
+    protected void enableCache(int maxSize, Duration ttl, UnaryOperator<T> copier) {
+        this.cache = new EntityCache<>(maxSize, ttl);
+        this.copier = copier;
+    }
+    
+    public Optional<EntityCache.Stats> getCacheStats() {
+        return cache == null ? Optional.empty() : Optional.of(cache.stats());
+    }
+    
+    public void resetCacheStats() {
+        if (cache != null) {
+            cache.resetStats();
+        }
+    }
+    
+    /** For reads that tolerate replication lag; the primary within the read-your-writes window. */
+    protected Jdbi readJdbi() {
+        return registry.forRead();
+    }
+    
+    // Public so that changes made elsewhere, e.g. by another node, can be evicted too
+    public void evictCached(ID id) {
+        if (cache != null && id != null) {
+            cache.invalidate(id);
+        }
+    }
+    
+    public void clearCached() {
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+    
+    /** After a write through this repository: keeps the request's next reads on the primary and evicts the entity. */
+    protected void written(ID id) {
+        registry.recordWrite();
+        evictCached(id);
     }
     
     public T save(T entity) {
-        return jdbi.withHandle(handle -> {
+        T saved = jdbi.withHandle(handle -> {
             ID id = getId(entity);
             if (id == null) {
                 return insert(handle, entity);
@@ -26,35 +111,79 @@ public abstract class BaseRepository<T, ID> {
                 return update(handle, entity);
             }
         });
+        written(getId(saved));
+        return saved;
     }
     
     public Optional<T> findById(ID id) {
-        return jdbi.withHandle(handle ->
-            handle.createQuery("SELECT * FROM " + tableName + " WHERE id = :id")
+        if (cache == null) {
+            return loadById(id);
+        }
+        
+        T cached = cache.get(id);
+        if (cached != null) {
+            return Optional.of(copier.apply(cached));
+        }
+        
+        long stamp = cache.stamp();
+        Optional<T> loaded = loadById(id);
+        loaded.ifPresent(entity -> cache.putIfFresh(id, copier.apply(entity), stamp));
+        return loaded;
+    }
+    
+    // Loads that fill the cache use the primary: a stale replica row would be served for the whole TTL
+    private Optional<T> loadById(ID id) {
+        return (cache == null ? readJdbi() : jdbi).withHandle(handle ->
+            handle.createQuery("SELECT " + columns + " FROM " + tableName + " WHERE id = :id")
                   .bind("id", id)
-                  .mapToBean(entityClass)
+                  .map(rowMapper)
                   .findFirst()
         );
     }
     
     public List<T> findAll() {
-        return jdbi.withHandle(handle ->
-            handle.createQuery("SELECT * FROM " + tableName + " ORDER BY id")
-                  .mapToBean(entityClass)
+        return readJdbi().withHandle(handle ->
+            handle.createQuery("SELECT " + columns + " FROM " + tableName + " ORDER BY id")
+                  .map(rowMapper)
                   .list()
         );
     }
     
+    public List<T> findAfter(ID afterId, int limit) {
+        return readJdbi().withHandle(handle -> {
+            Query query = handle.createQuery("SELECT " + columns + " FROM " + tableName +
+                                             (afterId == null ? "" : " WHERE id > :afterId") +
+                                             " ORDER BY id LIMIT :limit");
+            if (afterId != null) {
+                query.bind("afterId", afterId);
+            }
+            return query.bind("limit", limit)
+                        .map(rowMapper)
+                        .list();
+        });
+    }
+    
+    public void streamAll(Consumer<T> action) {
+        // PostgreSQL only honours the fetch size inside a transaction
+        readJdbi().useTransaction(handle ->
+            handle.createQuery("SELECT " + columns + " FROM " + tableName + " ORDER BY id")
+                  .setFetchSize(STREAM_FETCH_SIZE)
+                  .map(rowMapper)
+                  .forEach(action)
+        );
+    }
+    
     public void deleteById(ID id) {
         jdbi.withHandle(handle ->
             handle.createUpdate("DELETE FROM " + tableName + " WHERE id = :id")
                   .bind("id", id)
                   .execute()
         );
+        written(id);
     }
     
     public long count() {
-        return jdbi.withHandle(handle ->
+        return readJdbi().withHandle(handle ->
             handle.createQuery("SELECT COUNT(*) FROM " + tableName)
                   .mapTo(Long.class)
                   .one()
@@ -0,0 +1,96 @@
+package com.example.todo.repository;
+
+import org.jdbi.v3.core.Jdbi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Named {@link Jdbi} instances: one {@value #PRIMARY} that takes every write
+ * and any number of read replicas.
+ *
+ * {@link #forRead()} spreads reads over the replicas round-robin, except
+ * within the read-your-writes window: after a write by the client of the
+ * current request (see {@link ReadYourWrites}), that client's reads go to the
+ * primary until replication has had time to catch up. Writes by other
+ * clients, on this node or another, do not affect routing. Without replicas
+ * everything goes to the primary.
+ *
+ * The map is built once and never changes, so lookups take no locks.
+ */
+public class DataSourceRegistry {
+    public static final String PRIMARY = "primary";
+    public static final long DEFAULT_READ_YOUR_WRITES_MILLIS = 2000;
+
+    private final Map<String, Jdbi> sources;
+    private final Jdbi primary;
+    private final Jdbi[] replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile long readYourWritesMillis = DEFAULT_READ_YOUR_WRITES_MILLIS;
+
+    /** {@code sources} must contain {@value #PRIMARY}; every other entry is a replica. */
+    public DataSourceRegistry(Map<String, Jdbi> sources) {
+        if (!sources.containsKey(PRIMARY)) {
+            throw new IllegalArgumentException("No " + PRIMARY + " data source");
+        }
+        this.sources = Collections.unmodifiableMap(new LinkedHashMap<>(sources));
+        this.primary = sources.get(PRIMARY);
+        List<Jdbi> readers = new ArrayList<>();
+        sources.forEach((name, jdbi) -> {
+            if (!PRIMARY.equals(name)) {
+                readers.add(jdbi);
+            }
+        });
+        this.replicas = readers.toArray(new Jdbi[0]);
+    }
+
+    /** A registry without replicas, e.g. for an embedded database. */
+    public static DataSourceRegistry of(Jdbi primary) {
+        return new DataSourceRegistry(Map.of(PRIMARY, primary));
+    }
+
+    public Jdbi primary() {
+        return primary;
+    }
+
+    /** The source registered under {@code name}, or null. */
+    public Jdbi get(String name) {
+        return sources.get(name);
+    }
+
+    public Set<String> names() {
+        return sources.keySet();
+    }
+
+    public int getReplicaCount() {
+        return replicas.length;
+    }
+
+    public Jdbi forRead() {
+        if (replicas.length == 0) {
+            return primary;
+        }
+        if (System.currentTimeMillis() - ReadYourWrites.lastWriteMillis() < readYourWritesMillis) {
+            return primary;
+        }
+        return replicas[Math.floorMod(next.getAndIncrement(), replicas.length)];
+    }
+
+    /** Called after a local write, so that the rest of the current request reads it back. */
+    public void recordWrite() {
+        ReadYourWrites.markWrite(System.currentTimeMillis());
+    }
+
+    public void setReadYourWritesMillis(long millis) {
+        this.readYourWritesMillis = millis;
+    }
+
+    public long getReadYourWritesMillis() {
+        return readYourWritesMillis;
+    }
+}
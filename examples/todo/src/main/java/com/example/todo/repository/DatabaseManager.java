@@ -1,42 +1,188 @@
 package com.example.todo.repository;
 
+import com.example.metrics.MetricsRegistry;
 import org.jdbi.v3.core.Jdbi;
-import org.jdbi.v3.core.mapper.reflect.BeanMapper;
 import org.jdbi.v3.sqlobject.SqlObjectPlugin;
 
 import javax.naming.Context;
 import javax.naming.InitialContext;
+import javax.naming.NameClassPair;
+import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 
+/**
+ * Sets up the database layer from JNDI: the primary {@code jdbc/TodoDB} and
+ * any number of read replicas bound as {@code jdbc/TodoDBReplica*}, each with
+ * its own instrumented pool and {@link Jdbi}, collected in a
+ * {@link DataSourceRegistry}.
+ */
 public class DatabaseManager {
-    private static DatabaseManager instance;
-    private final Jdbi jdbi;
+    // Default pool size of Tomcat's DBCP, used when the DataSource does not expose its own
+    private static final int DEFAULT_MAX_CONNECTIONS = 8;
+    private static final String JNDI_PREFIX = "java:comp/env/";
+    private static final String PRIMARY_NAME = "jdbc/TodoDB";
+    private static final String REPLICA_PREFIX = "TodoDBReplica";
+    
+    // Volatile so that getInstance() needs no lock once the instance exists
+    private static volatile DatabaseManager instance;
+    private final DataSourceRegistry registry;
+    private final List<InstrumentedDataSource> pools = new ArrayList<>();
+    private final List<Integer> minIdle = new ArrayList<>();
+    private final int maxConnections;
+    private final InstrumentedDataSource dataSource;
+    private final StatementProfiler statementProfiler;
     
     private DatabaseManager() {
         try {
-            // Get DataSource from Tomcat JNDI
+            // Get DataSources from Tomcat JNDI
             Context initCtx = new InitialContext();
-            DataSource ds = (DataSource) initCtx.lookup("java:comp/env/jdbc/TodoDB");
+            DataSource ds = (DataSource) initCtx.lookup(JNDI_PREFIX + PRIMARY_NAME);
+            this.maxConnections = poolSetting(ds, "getMaxTotal", DEFAULT_MAX_CONNECTIONS);
+            this.dataSource = addPool(DataSourceRegistry.PRIMARY, ds);
+            
+            // Times every statement of every pool; served as JSON on /metrics/statements.
+            // Plans are taken on the primary, which has the same schema as the replicas
+            this.statementProfiler = new StatementProfiler(dataSource);
             
-            // Configure JDBI
-            this.jdbi = Jdbi.create(ds)
-                           .installPlugin(new SqlObjectPlugin())
-                           .registerRowMapper(com.example.todo.model.Todo.class, BeanMapper.of(com.example.todo.model.Todo.class));
+            Map<String, Jdbi> sources = new LinkedHashMap<>();
+            sources.put(DataSourceRegistry.PRIMARY, createJdbi(dataSource));
+            for (Map.Entry<String, DataSource> replica : lookupReplicas(initCtx).entrySet()) {
+                sources.put(replica.getKey(), createJdbi(addPool(replica.getKey(), replica.getValue())));
+            }
+            this.registry = new DataSourceRegistry(sources);
+            
+            // Every checkout goes through the wrappers, which publish pool metrics on /metrics
+            List<InstrumentedDataSource> instrumented = List.copyOf(pools);
+            MetricsRegistry.getInstance().register(out -> InstrumentedDataSource.writeTo(out, instrumented));
                            
         } catch (NamingException e) {
             throw new RuntimeException("Failed to setup database connection", e);
         }
     }
     
-    public static synchronized DatabaseManager getInstance() {
-        if (instance == null) {
-            instance = new DatabaseManager();
+    public static DatabaseManager getInstance() {
+        DatabaseManager current = instance;
+        if (current == null) {
+            synchronized (DatabaseManager.class) {
+                current = instance;
+                if (current == null) {
+                    // Left unset on failure, so the next call tries again
+                    current = new DatabaseManager();
+                    instance = current;
+                }
+            }
         }
-        return instance;
+        return current;
     }
     
+    /** The primary's {@link Jdbi}; reads that may go to a replica use {@link #getRegistry()}. */
     public Jdbi getJdbi() {
+        return registry.primary();
+    }
+    
+    public DataSourceRegistry getRegistry() {
+        return registry;
+    }
+    
+    /** The primary's pool. */
+    public InstrumentedDataSource getDataSource() {
+        return dataSource;
+    }
+    
+    public StatementProfiler getStatementProfiler() {
+        return statementProfiler;
+    }
+    
+    /** Size of the primary's connection pool, i.e. {@code maxTotal} in context.xml. */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+    
+    /**
+     * Opens the connections every pool keeps idle ({@code minIdle}, or
+     * {@code maxIdle} when that is 0) all at once and returns them, so the
+     * first requests after a deploy do not wait for TCP and authentication
+     * handshakes. Returns how many were opened.
+     */
+    public int primePool() throws SQLException {
+        int total = 0;
+        for (int i = 0; i < pools.size(); i++) {
+            total += prime(pools.get(i), minIdle.get(i));
+        }
+        return total;
+    }
+    
+    private static int prime(DataSource pool, int count) throws SQLException {
+        List<Connection> opened = new ArrayList<>();
+        try {
+            // Held together, otherwise the pool would hand the same connection back every time
+            for (int i = 0; i < count; i++) {
+                opened.add(pool.getConnection());
+            }
+            return opened.size();
+        } finally {
+            for (Connection connection : opened) {
+                connection.close();
+            }
+        }
+    }
+    
+    private InstrumentedDataSource addPool(String name, DataSource ds) {
+        int max = poolSetting(ds, "getMaxTotal", DEFAULT_MAX_CONNECTIONS);
+        InstrumentedDataSource pool = new InstrumentedDataSource(ds, max, InstrumentedDataSource.DEFAULT_LEAK_THRESHOLD_MILLIS, name);
+        pools.add(pool);
+        // minIdle defaults to 0 in DBCP; maxIdle is then what the pool keeps after a burst
+        minIdle.add(Math.min(poolSetting(ds, "getMinIdle", poolSetting(ds, "getMaxIdle", 1)), max));
+        return pool;
+    }
+    
+    private Jdbi createJdbi(DataSource ds) {
+        Jdbi jdbi = Jdbi.create(ds)
+                        .installPlugin(new SqlObjectPlugin())
+                        .registerRowMapper(com.example.todo.model.Todo.class, new TodoMapper());
+        statementProfiler.install(jdbi);
         return jdbi;
     }
+    
+    // jdbc/TodoDBReplica becomes "replica", jdbc/TodoDBReplica2 "replica2", in name order
+    private static Map<String, DataSource> lookupReplicas(Context ctx) throws NamingException {
+        Map<String, DataSource> replicas = new TreeMap<>();
+        NamingEnumeration<NameClassPair> names;
+        try {
+            names = ctx.list(JNDI_PREFIX + "jdbc");
+        } catch (NamingException e) {
+            // Containers that cannot list the environment only get the primary
+            return replicas;
+        }
+        while (names.hasMore()) {
+            String name = names.next().getName();
+            if (name.startsWith(REPLICA_PREFIX)) {
+                String key = "replica" + name.substring(REPLICA_PREFIX.length()).toLowerCase(Locale.ROOT);
+                replicas.put(key, (DataSource) ctx.lookup(JNDI_PREFIX + "jdbc/" + name));
+            }
+        }
+        return replicas;
+    }
+    
+    // Tomcat's BasicDataSource is not on the compile classpath, so its settings are read reflectively
+    private static int poolSetting(DataSource ds, String getter, int defaultValue) {
+        try {
+            Object value = ds.getClass().getMethod(getter).invoke(ds);
+            if (value instanceof Integer && (Integer) value > 0) {
+                return (Integer) value;
+            }
+        } catch (ReflectiveOperationException e) {
+            // Not a DBCP DataSource
+        }
+        return defaultValue;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,196 @@
+package com.example.todo.repository;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, concurrent read-through cache used by {@link BaseRepository}.
+ *
+ * Entries expire after a fixed TTL. When the cache is full, eviction follows a
+ * generalized CLOCK: candidates are taken in insertion order and every entry
+ * that was read since its last visit gets its frequency decremented and a
+ * second chance, so hot ids survive while one-off reads are evicted first.
+ */
+public class EntityCache<K, V> {
+    private static final int MAX_FREQUENCY = 15;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Queue<K> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger clockLength = new AtomicInteger();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public EntityCache(int maxSize, Duration ttl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt > 0) {
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        if (entry.frequency < MAX_FREQUENCY) {
+            entry.frequency++;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Returns a token to pass to {@link #putIfFresh}; loads that overlap an
+     * invalidation are then discarded instead of caching a stale row.
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    public void putIfFresh(K key, V value, long stamp) {
+        if (invalidations.get() != stamp) {
+            return;
+        }
+        Entry<V> entry = new Entry<>(value, System.nanoTime() + ttlNanos);
+        Entry<V> previous = entries.put(key, entry);
+        // An invalidation between the check and the put has already removed what it could;
+        // taking the entry back out is what keeps the stale row from living for the whole TTL
+        if (invalidations.get() != stamp) {
+            entries.remove(key, entry);
+            return;
+        }
+        if (previous == null) {
+            clock.offer(key);
+            clockLength.incrementAndGet();
+        }
+        if (entries.size() > maxSize || clockLength.get() > 2 * maxSize) {
+            evict();
+        }
+    }
+
+    public void invalidate(K key) {
+        invalidations.incrementAndGet();
+        entries.remove(key);
+    }
+
+    public void clear() {
+        invalidations.incrementAndGet();
+        entries.clear();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size(), maxSize);
+    }
+
+    /** Zeroes the counters but keeps the entries, e.g. once warm-up traffic has been served. */
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    private void evict() {
+        // A single thread evicts at a time; concurrent writers may briefly overshoot maxSize
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            if (clockLength.get() > 2 * maxSize) {
+                compact();
+            }
+            K key;
+            while (entries.size() > maxSize && (key = clock.poll()) != null) {
+                clockLength.decrementAndGet();
+                Entry<V> entry = entries.get(key);
+                if (entry == null) {
+                    continue;
+                }
+                if (entry.frequency > 0 && System.nanoTime() - entry.expiresAt <= 0) {
+                    entry.frequency--;
+                    clock.offer(key);
+                    clockLength.incrementAndGet();
+                } else if (entries.remove(key, entry)) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    // Drops keys of invalidated entries and duplicates left behind by re-inserted keys
+    private void compact() {
+        Set<K> live = new HashSet<>();
+        for (int remaining = clockLength.get(); remaining > 0; remaining--) {
+            K key = clock.poll();
+            if (key == null) {
+                break;
+            }
+            clockLength.decrementAndGet();
+            if (entries.containsKey(key) && live.add(key)) {
+                clock.offer(key);
+                clockLength.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+        // Racy increments are fine: the counter is only an eviction hint
+        volatile int frequency;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+        private final int maxSize;
+
+        public Stats(long hits, long misses, long evictions, int size, int maxSize) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.maxSize = maxSize;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public int getSize() { return size; }
+        public int getMaxSize() { return maxSize; }
+
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0.0 : (double) hits / requests * 100;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.example.todo.repository;
+
+import com.example.metrics.LatencyHistogram;
+import com.example.metrics.MetricsRegistry;
+import com.example.metrics.PrometheusWriter;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * {@link DataSource} wrapper that measures how the connection pool is used.
+ *
+ * Every checkout records how long the caller waited for the pool and, when
+ * the connection is closed, how long it was held. Connections held past the
+ * leak threshold are attributed to the first application method on the
+ * holding thread's stack: when they are returned, and at scrape time while
+ * they are still open. Walking a stack costs several microseconds, so it is
+ * only done for those long holds and never on a regular checkout. The pool's
+ * own idle count is read reflectively, since Tomcat's DBCP classes are not on
+ * the compile classpath.
+ */
+public class InstrumentedDataSource implements DataSource, MetricsRegistry.Source {
+    public static final long DEFAULT_LEAK_THRESHOLD_MILLIS = 10_000;
+
+    private static final String PACKAGE = "com.example.todo.";
+    private static final String UNKNOWN_CALLER = "unknown";
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+    private static final Class<?>[] CONNECTION_INTERFACE = {Connection.class};
+
+    private final DataSource delegate;
+    private final int maxConnections;
+    private final long leakThresholdNanos;
+    private final Method numIdle;
+    private final String name;
+    private final String labels;
+
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LatencyHistogram holdTime = new LatencyHistogram();
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Set<Checkout> open = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, LongAdder> longHolds = new ConcurrentHashMap<>();
+
+    public InstrumentedDataSource(DataSource delegate, int maxConnections) {
+        this(delegate, maxConnections, DEFAULT_LEAK_THRESHOLD_MILLIS);
+    }
+
+    public InstrumentedDataSource(DataSource delegate, int maxConnections, long leakThresholdMillis) {
+        this(delegate, maxConnections, leakThresholdMillis, null);
+    }
+
+    /** {@code name} labels this pool's samples when a node has several, e.g. {@code primary}; may be null. */
+    public InstrumentedDataSource(DataSource delegate, int maxConnections, long leakThresholdMillis, String name) {
+        this.delegate = delegate;
+        this.maxConnections = maxConnections;
+        this.leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+        this.numIdle = poolMethod(delegate, "getNumIdle");
+        this.name = name;
+        this.labels = name == null ? null : PrometheusWriter.label(null, "pool", name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return checkout(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return checkout(username, password);
+    }
+
+    private Connection checkout(String username, String password) throws SQLException {
+        waiting.incrementAndGet();
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = username == null ? delegate.getConnection() : delegate.getConnection(username, password);
+        } catch (SQLException | RuntimeException e) {
+            if (isTimeout(e)) {
+                timeouts.increment();
+            } else {
+                failures.increment();
+            }
+            throw e;
+        } finally {
+            waiting.decrementAndGet();
+            waitTime.recordNanos(System.nanoTime() - start);
+        }
+
+        Checkout checkout = new Checkout(connection, Thread.currentThread(), System.nanoTime());
+        open.add(checkout);
+        active.incrementAndGet();
+        checkouts.increment();
+        return (Connection) Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(), CONNECTION_INTERFACE, checkout);
+    }
+
+    private void release(Checkout checkout) {
+        long held = System.nanoTime() - checkout.start;
+        open.remove(checkout);
+        active.decrementAndGet();
+        holdTime.recordNanos(held);
+        if (held > leakThresholdNanos) {
+            // Closing happens in the same method that opened the connection, e.g. in Jdbi.withHandle
+            String caller = STACK_WALKER.walk(frames -> frames
+                .map(frame -> callerOf(frame.getClassName(), frame.getMethodName()))
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(UNKNOWN_CALLER));
+            longHolds.computeIfAbsent(caller, key -> new LongAdder()).increment();
+        }
+    }
+
+    @Override
+    public void writeTo(PrometheusWriter out) {
+        writeTo(out, List.of(this));
+    }
+
+    /**
+     * Writes the metrics of several pools, each family once with one sample
+     * per pool, labelled {@code pool="<name>"}. Pools without a name are
+     * written without the label.
+     */
+    public static void writeTo(PrometheusWriter out, List<InstrumentedDataSource> pools) {
+        out.family("todo_db_pool_max_connections", "gauge", "Size of the connection pool (maxTotal)");
+        pools.forEach(pool -> out.sample("todo_db_pool_max_connections", pool.labels, pool.maxConnections));
+        out.family("todo_db_pool_active_connections", "gauge", "Connections currently checked out by the application");
+        pools.forEach(pool -> out.sample("todo_db_pool_active_connections", pool.labels, pool.active.get()));
+        out.family("todo_db_pool_waiting_threads", "gauge", "Threads currently waiting for a connection");
+        pools.forEach(pool -> out.sample("todo_db_pool_waiting_threads", pool.labels, pool.waiting.get()));
+        boolean familyWritten = false;
+        for (InstrumentedDataSource pool : pools) {
+            int idle = pool.idleConnections();
+            if (idle >= 0) {
+                if (!familyWritten) {
+                    out.family("todo_db_pool_idle_connections", "gauge", "Idle connections kept by the pool");
+                    familyWritten = true;
+                }
+                out.sample("todo_db_pool_idle_connections", pool.labels, idle);
+            }
+        }
+
+        out.family("todo_db_pool_checkouts_total", "counter", "Connections handed out by the pool");
+        pools.forEach(pool -> out.sample("todo_db_pool_checkouts_total", pool.labels, pool.checkouts.sum()));
+        out.family("todo_db_pool_timeouts_total", "counter", "Checkouts that gave up waiting for a free connection");
+        pools.forEach(pool -> out.sample("todo_db_pool_timeouts_total", pool.labels, pool.timeouts.sum()));
+        out.family("todo_db_pool_checkout_failures_total", "counter", "Checkouts that failed for reasons other than a timeout");
+        pools.forEach(pool -> out.sample("todo_db_pool_checkout_failures_total", pool.labels, pool.failures.sum()));
+
+        out.family("todo_db_pool_wait_seconds", "summary", "Time spent waiting for a connection; quantiles cover the last "
+                                                            + LatencyHistogram.WINDOW_SECONDS + " s");
+        pools.forEach(pool -> pool.waitTime.writeSummary(out, "todo_db_pool_wait_seconds", pool.labels));
+        out.family("todo_db_pool_hold_seconds", "summary", "Time a connection was held before being returned; quantiles cover the last "
+                                                            + LatencyHistogram.WINDOW_SECONDS + " s");
+        pools.forEach(pool -> pool.holdTime.writeSummary(out, "todo_db_pool_hold_seconds", pool.labels));
+
+        writeLeakSuspects(out, pools);
+    }
+
+    // Sorted by caller so that consecutive scrapes list series in the same order
+    private static void writeLeakSuspects(PrometheusWriter out, List<InstrumentedDataSource> pools) {
+        long now = System.nanoTime();
+        List<Map<String, Integer>> suspects = new ArrayList<>();
+        long[] oldest = new long[pools.size()];
+        for (int i = 0; i < pools.size(); i++) {
+            InstrumentedDataSource pool = pools.get(i);
+            Map<String, Integer> byCaller = new TreeMap<>();
+            for (Checkout checkout : pool.open) {
+                long held = now - checkout.start;
+                oldest[i] = Math.max(oldest[i], held);
+                if (held > pool.leakThresholdNanos) {
+                    byCaller.merge(checkout.caller(), 1, Integer::sum);
+                }
+            }
+            suspects.add(byCaller);
+        }
+
+        out.family("todo_db_pool_oldest_checkout_seconds", "gauge", "Age of the longest-held open connection");
+        for (int i = 0; i < pools.size(); i++) {
+            out.sample("todo_db_pool_oldest_checkout_seconds", pools.get(i).labels, oldest[i] / 1e9);
+        }
+        // All pools of a node share the threshold in practice; the help text shows the first one's
+        long thresholdMillis = pools.isEmpty() ? DEFAULT_LEAK_THRESHOLD_MILLIS
+                                               : TimeUnit.NANOSECONDS.toMillis(pools.get(0).leakThresholdNanos);
+        out.family("todo_db_pool_leak_suspects", "gauge",
+                   "Open connections held longer than " + thresholdMillis + " ms, by caller");
+        for (int i = 0; i < pools.size(); i++) {
+            String labels = pools.get(i).labels;
+            suspects.get(i).forEach((caller, count) ->
+                out.sample("todo_db_pool_leak_suspects", PrometheusWriter.label(labels, "caller", caller), count));
+        }
+        out.family("todo_db_pool_long_holds_total", "counter", "Connections returned after being held past the leak threshold, by caller");
+        for (InstrumentedDataSource pool : pools) {
+            new TreeMap<>(pool.longHolds).forEach((caller, count) ->
+                out.sample("todo_db_pool_long_holds_total", PrometheusWriter.label(pool.labels, "caller", caller), count.sum()));
+        }
+    }
+
+    private int idleConnections() {
+        if (numIdle == null) {
+            return -1;
+        }
+        try {
+            Object value = numIdle.invoke(delegate);
+            return value instanceof Integer ? (Integer) value : -1;
+        } catch (ReflectiveOperationException e) {
+            return -1;
+        }
+    }
+
+    // Application frames outside the data access plumbing map to e.g. "TodoRepository.find", others to null
+    private static String callerOf(String className, String methodName) {
+        if (!className.startsWith(PACKAGE)
+                || isClassOrNested(className, InstrumentedDataSource.class)
+                || isClassOrNested(className, BaseRepository.class)) {
+            return null;
+        }
+        return className.substring(className.lastIndexOf('.') + 1) + "." + methodName;
+    }
+
+    // Prefix matching alone would also skip e.g. an InstrumentedDataSourceTest
+    private static boolean isClassOrNested(String className, Class<?> type) {
+        String name = type.getName();
+        return className.startsWith(name)
+            && (className.length() == name.length() || className.charAt(name.length()) == '$');
+    }
+
+    // DBCP reports an exhausted pool as an SQLException caused by NoSuchElementException
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTimeoutException || cause instanceof NoSuchElementException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Method poolMethod(DataSource ds, String name) {
+        try {
+            return ds.getClass().getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+
+    /** One checked-out connection; intercepts {@code close} and forwards everything else. */
+    private final class Checkout implements InvocationHandler {
+        private final Connection connection;
+        private final Thread thread;
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile String caller;
+
+        Checkout(Connection connection, Thread thread, long start) {
+            this.connection = connection;
+            this.thread = thread;
+            this.start = start;
+        }
+
+        // Resolved at the first scrape that sees the hold, while the thread is most likely still inside it
+        String caller() {
+            String resolved = caller;
+            if (resolved == null) {
+                resolved = UNKNOWN_CALLER;
+                for (StackTraceElement element : thread.getStackTrace()) {
+                    String candidate = callerOf(element.getClassName(), element.getMethodName());
+                    if (candidate != null) {
+                        resolved = candidate;
+                        break;
+                    }
+                }
+                caller = resolved;
+            }
+            return resolved;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (released.compareAndSet(false, true)) {
+                        release(this);
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
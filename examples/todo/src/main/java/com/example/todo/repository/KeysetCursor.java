@@ -0,0 +1,54 @@
+package com.example.todo.repository;
+
+import com.example.todo.model.Todo;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of the last row returned by a keyset-paginated query.
+ *
+ * The cursor carries the ordering keys used by the repository queries
+ * ({@code id} and {@code created_at}) and is exchanged with clients as an
+ * opaque URL-safe token.
+ */
+public class KeysetCursor {
+    private final long id;
+    private final LocalDateTime createdAt;
+
+    public KeysetCursor(long id, LocalDateTime createdAt) {
+        this.id = id;
+        this.createdAt = createdAt;
+    }
+
+    public static KeysetCursor of(Todo todo) {
+        return new KeysetCursor(todo.getId(), todo.getCreatedAt());
+    }
+
+    public long getId() { return id; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public String encode() {
+        String raw = createdAt == null ? Long.toString(id) : id + "|" + createdAt;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("Empty cursor");
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            if (separator < 0) {
+                return new KeysetCursor(Long.parseLong(raw), null);
+            }
+            return new KeysetCursor(Long.parseLong(raw.substring(0, separator)),
+                                    LocalDateTime.parse(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.todo.repository;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.SQLException;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Exchanges short messages between application nodes over PostgreSQL
+ * {@code LISTEN/NOTIFY}.
+ *
+ * A daemon thread keeps one pooled connection listening on the channel and
+ * hands every payload to the consumer, reconnecting after failures. Messages
+ * sent while no connection is listening are lost, so consumers must treat
+ * them as hints rather than a complete log.
+ */
+public class PgNotificationRelay {
+    private static final Logger LOGGER = Logger.getLogger(PgNotificationRelay.class.getName());
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final int POLL_MILLIS = 1000;
+    private static final long RECONNECT_MILLIS = 5000;
+
+    private final Jdbi jdbi;
+    private final String channel;
+    private final Consumer<String> consumer;
+    private volatile boolean running;
+    private Thread listener;
+
+    public PgNotificationRelay(Jdbi jdbi, String channel, Consumer<String> consumer) {
+        // LISTEN takes an identifier, which cannot be a bind parameter
+        if (channel == null || !CHANNEL.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Invalid notification channel: " + channel);
+        }
+        this.jdbi = jdbi;
+        this.channel = channel;
+        this.consumer = consumer;
+    }
+
+    public synchronized void start() {
+        if (listener != null) {
+            return;
+        }
+        running = true;
+        listener = new Thread(this::listen, "todo-notify-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+            listener = null;
+        }
+    }
+
+    public void notify(String payload) {
+        jdbi.useHandle(handle ->
+            handle.createQuery("SELECT 1 FROM pg_notify(:channel, :payload)")
+                .bind("channel", channel)
+                .bind("payload", payload)
+                .mapTo(Integer.class)
+                .one()
+        );
+    }
+
+    private void listen() {
+        while (running) {
+            try (Handle handle = jdbi.open()) {
+                handle.execute("LISTEN " + channel);
+                PGConnection connection = handle.getConnection().unwrap(PGConnection.class);
+                try {
+                    while (running) {
+                        PGNotification[] notifications = connection.getNotifications(POLL_MILLIS);
+                        if (notifications == null) {
+                            continue;
+                        }
+                        for (PGNotification notification : notifications) {
+                            deliver(notification.getParameter());
+                        }
+                    }
+                } finally {
+                    // The connection goes back to the pool and must not keep receiving notifications
+                    handle.execute("UNLISTEN *");
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                LOGGER.log(Level.WARNING, "Listening on " + channel + " failed, reconnecting", e);
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void deliver(String payload) {
+        try {
+            consumer.accept(payload);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Notification handler failed for " + payload, e);
+        }
+    }
+}
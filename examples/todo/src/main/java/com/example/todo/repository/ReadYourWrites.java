@@ -0,0 +1,36 @@
+package com.example.todo.repository;
+
+/**
+ * When the client of the current request last wrote, so that
+ * {@link DataSourceRegistry#forRead()} keeps its reads on the primary for a
+ * while. The web layer opens the scope from a cookie at the start of a
+ * request and closes it at the end. Code running outside a request, such as
+ * the warm-up, the notification relay or background tasks, has no write
+ * time, so its reads always go to a replica when there is one.
+ */
+public final class ReadYourWrites {
+    private static final ThreadLocal<long[]> CURRENT = new ThreadLocal<>();
+
+    private ReadYourWrites() {}
+
+    /** Starts a request scope; {@code lastWriteMillis} is 0 for a client that has not written. */
+    public static void begin(long lastWriteMillis) {
+        CURRENT.set(new long[] {lastWriteMillis});
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    public static long lastWriteMillis() {
+        long[] scope = CURRENT.get();
+        return scope == null ? 0 : scope[0];
+    }
+
+    static void markWrite(long millis) {
+        long[] scope = CURRENT.get();
+        if (scope != null) {
+            scope[0] = millis;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.todo.repository;
+
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.DefaultStatementBuilder;
+import org.jdbi.v3.core.statement.ParsedSql;
+import org.jdbi.v3.core.statement.SqlLogger;
+import org.jdbi.v3.core.statement.StatementContext;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Times every statement JDBI executes and keeps the totals per statement
+ * shape, i.e. the SQL with literals and the length of {@code IN} lists
+ * folded away.
+ *
+ * The first time a shape runs longer than the slow threshold its plan is
+ * captured with {@code EXPLAIN} and the same parameters, on a background
+ * thread and a separate connection, so the request that was slow does not
+ * wait for it. {@code EXPLAIN (ANALYZE, BUFFERS)} runs the statement again,
+ * so it is opt-in ({@link #setAnalyze}) and limited to reads, which then run
+ * in a read-only transaction that is rolled back.
+ *
+ * The per-statement cost is a map lookup and three atomic adds; the shape is
+ * computed once per distinct SQL string. Until a shape has its plan, its
+ * statements also go through a proxy that records the bound parameters.
+ */
+public class StatementProfiler implements SqlLogger {
+    public static final long DEFAULT_SLOW_THRESHOLD_MILLIS = 200;
+    public static final int DEFAULT_REPORT_SIZE = 20;
+
+    // Bounds memory if statements are ever built with inlined values
+    private static final int MAX_SHAPES = 500;
+    private static final int EXPLAIN_TIMEOUT_SECONDS = 30;
+    private static final String OVERFLOW_SHAPE = "(other statements)";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w$.])\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern QUERY = Pattern.compile("(?is)\\s*(select|with|values|table)\\b.*");
+    private static final Pattern DML = Pattern.compile("(?is)\\s*(insert|update|delete|merge)\\b.*");
+    private static final Pattern WRITE = Pattern.compile("(?i)\\b(insert|update|delete|merge)\\b");
+
+    private final DataSource dataSource;
+    private final ConcurrentHashMap<String, Shape> shapes = new ConcurrentHashMap<>();
+    // JDBI caches parsed statements, so the same SQL string comes back on every call
+    private final ConcurrentHashMap<String, Shape> bySql = new ConcurrentHashMap<>();
+    private final Shape overflow = new Shape(OVERFLOW_SHAPE);
+    private final ThreadPoolExecutor explainer;
+    private volatile long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_THRESHOLD_MILLIS);
+    private volatile boolean analyze;
+
+    public StatementProfiler(DataSource dataSource) {
+        this.dataSource = dataSource;
+        // No core thread: the worker exists only while plans are being captured, so nothing needs stopping on undeploy
+        this.explainer = new ThreadPoolExecutor(0, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(16), runnable -> {
+            Thread thread = new Thread(runnable, "todo-explain");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    public void setSlowThresholdMillis(long millis) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public long getSlowThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    /**
+     * Whether plans of slow reads are taken with {@code EXPLAIN (ANALYZE, BUFFERS)}.
+     * Off by default: a read that calls a function with side effects would have
+     * them twice, except for what the rollback undoes.
+     */
+    public void setAnalyze(boolean analyze) {
+        this.analyze = analyze;
+    }
+
+    public boolean isAnalyze() {
+        return analyze;
+    }
+
+    /**
+     * Installs the profiler as the {@link SqlLogger} of {@code jdbi}, and its
+     * statement builder, which records the parameters an EXPLAIN is run with.
+     */
+    public void install(Jdbi jdbi) {
+        jdbi.setSqlLogger(this);
+        jdbi.setStatementBuilderFactory(connection -> new RecordingStatementBuilder());
+    }
+
+    @Override
+    public void logAfterExecution(StatementContext context) {
+        record(context, false);
+    }
+
+    @Override
+    public void logException(StatementContext context, SQLException ex) {
+        record(context, true);
+    }
+
+    private void record(StatementContext context, boolean failed) {
+        ParsedSql parsed = context.getParsedSql();
+        if (parsed == null) {
+            return;
+        }
+        long nanos = context.getElapsedTime(ChronoUnit.NANOS);
+        Shape shape = shapeOf(parsed.getSql());
+        shape.calls.increment();
+        shape.totalNanos.add(nanos);
+        long max = shape.maxNanos.get();
+        while (nanos > max && !shape.maxNanos.compareAndSet(max, nanos)) {
+            max = shape.maxNanos.get();
+        }
+        if (failed) {
+            shape.failures.increment();
+        }
+        if (nanos >= slowThresholdNanos) {
+            shape.slowCalls.increment();
+            String explain = explainCommand(parsed.getSql());
+            if (explain != null && shape != overflow && !failed && shape.explained.compareAndSet(false, true)) {
+                recordedParameters(context)
+                    .ifPresentOrElse(parameters -> explain(shape, explain, parameters),
+                                     () -> shape.plan = "Not captured: the statement's parameters were not recorded (batch)");
+            }
+        }
+    }
+
+    private Shape shapeOf(String sql) {
+        Shape shape = bySql.get(sql);
+        if (shape != null) {
+            return shape;
+        }
+        if (shapes.size() >= MAX_SHAPES) {
+            return overflow;
+        }
+        shape = shapes.computeIfAbsent(normalize(sql), Shape::new);
+        if (bySql.size() < MAX_SHAPES * 4) {
+            bySql.putIfAbsent(sql, shape);
+        }
+        return shape;
+    }
+
+    static String normalize(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        return PARAMETER_LIST.matcher(shape).replaceAll("?, ...");
+    }
+
+    /** Slowest shapes by total time, at most {@code limit} of them. */
+    public List<StatementStats> report(int limit) {
+        List<StatementStats> stats = new ArrayList<>();
+        for (Shape shape : shapes.values()) {
+            stats.add(shape.stats());
+        }
+        if (overflow.calls.sum() > 0) {
+            stats.add(overflow.stats());
+        }
+        stats.sort(Comparator.comparingDouble(StatementStats::getTotalMillis).reversed());
+        return stats.size() > limit ? new ArrayList<>(stats.subList(0, limit)) : stats;
+    }
+
+    private static Optional<List<Object[]>> recordedParameters(StatementContext context) {
+        PreparedStatement statement = context.getStatement();
+        if (statement == null || !Proxy.isProxyClass(statement.getClass())
+                || !(Proxy.getInvocationHandler(statement) instanceof ParameterRecorder)) {
+            return Optional.empty();
+        }
+        ParameterRecorder recorder = (ParameterRecorder) Proxy.getInvocationHandler(statement);
+        return recorder.batched ? Optional.empty() : Optional.of(new ArrayList<>(recorder.calls));
+    }
+
+    // DDL and utility statements have no plan
+    private String explainCommand(String sql) {
+        boolean query = QUERY.matcher(sql).matches();
+        if (!query && !DML.matcher(sql).matches()) {
+            return null;
+        }
+        return analyze && query && !WRITE.matcher(sql).find() ? "EXPLAIN (ANALYZE, BUFFERS) " + sql : "EXPLAIN " + sql;
+    }
+
+    private void explain(Shape shape, String explain, List<Object[]> parameters) {
+        explainer.execute(() -> {
+            StringBuilder plan = new StringBuilder();
+            boolean analyzed = explain.startsWith("EXPLAIN (ANALYZE");
+            try (Connection connection = dataSource.getConnection()) {
+                if (analyzed) {
+                    // Nothing the second run does is committed, NOTIFY included
+                    connection.setAutoCommit(false);
+                    connection.setReadOnly(true);
+                }
+                try (PreparedStatement ps = connection.prepareStatement(explain)) {
+                    ps.setQueryTimeout(EXPLAIN_TIMEOUT_SECONDS);
+                    for (Object[] call : parameters) {
+                        ((Method) call[0]).invoke(ps, (Object[]) call[1]);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            plan.append(rs.getString(1)).append('\n');
+                        }
+                    }
+                } finally {
+                    if (analyzed) {
+                        connection.rollback();
+                        connection.setReadOnly(false);
+                        connection.setAutoCommit(true);
+                    }
+                }
+                shape.plan = plan.toString();
+            } catch (Exception e) {
+                shape.plan = "EXPLAIN failed: " + e;
+            }
+            shape.planCapturedAt = Instant.now();
+        });
+    }
+
+    // Wraps the statements of shapes that have no plan yet, everything else gets the driver's own
+    private final class RecordingStatementBuilder extends DefaultStatementBuilder {
+        @Override
+        public PreparedStatement create(Connection connection, String sql, StatementContext context) throws SQLException {
+            PreparedStatement statement = super.create(connection, sql, context);
+            Shape shape = bySql.get(sql);
+            if (shape == null ? shapes.size() >= MAX_SHAPES : shape.explained.get()) {
+                return statement;
+            }
+            return (PreparedStatement) Proxy.newProxyInstance(StatementProfiler.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class}, new ParameterRecorder(statement));
+        }
+    }
+
+    private static final class ParameterRecorder implements InvocationHandler {
+        private final PreparedStatement target;
+        private final List<Object[]> calls = new ArrayList<>();
+        private boolean batched;
+
+        ParameterRecorder(PreparedStatement target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                calls.add(new Object[] {method, args});
+            } else if (name.equals("clearParameters")) {
+                calls.clear();
+            } else if (name.equals("addBatch")) {
+                batched = true;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static final class Shape {
+        private final String sql;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder slowCalls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicBoolean explained = new AtomicBoolean();
+        private volatile String plan;
+        private volatile Instant planCapturedAt;
+
+        Shape(String sql) {
+            this.sql = sql;
+        }
+
+        StatementStats stats() {
+            Instant capturedAt = planCapturedAt;
+            return new StatementStats(sql, calls.sum(), slowCalls.sum(), failures.sum(), totalNanos.sum() / 1e6,
+                                      maxNanos.get() / 1e6, plan, capturedAt == null ? null : capturedAt.toString());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.todo.repository;
+
+/** One row of the {@link StatementProfiler} report, serialized as JSON on /metrics/statements. */
+public class StatementStats {
+    private final String statement;
+    private final long calls;
+    private final long slowCalls;
+    private final long failures;
+    private final double totalMillis;
+    private final double maxMillis;
+    private final String plan;
+    private final String planCapturedAt;
+
+    public StatementStats(String statement, long calls, long slowCalls, long failures,
+                          double totalMillis, double maxMillis, String plan, String planCapturedAt) {
+        this.statement = statement;
+        this.calls = calls;
+        this.slowCalls = slowCalls;
+        this.failures = failures;
+        this.totalMillis = totalMillis;
+        this.maxMillis = maxMillis;
+        this.plan = plan;
+        this.planCapturedAt = planCapturedAt;
+    }
+
+    public String getStatement() { return statement; }
+    public long getCalls() { return calls; }
+    public long getSlowCalls() { return slowCalls; }
+    public long getFailures() { return failures; }
+    public double getTotalMillis() { return totalMillis; }
+    public double getMeanMillis() { return calls == 0 ? 0 : totalMillis / calls; }
+    public double getMaxMillis() { return maxMillis; }
+    public String getPlan() { return plan; }
+    public String getPlanCapturedAt() { return planCapturedAt; }
+}
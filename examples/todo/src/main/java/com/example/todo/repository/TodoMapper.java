@@ -0,0 +1,79 @@
+package com.example.todo.repository;
+
+import com.example.todo.model.Todo;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Row mapper for {@link Todo} that avoids bean reflection.
+ *
+ * Column positions are resolved once per result set in {@link #specialize};
+ * each row is then read by index with primitive getters and assigned through
+ * the plain setters. Columns missing from the select list are left unset.
+ */
+public class TodoMapper implements RowMapper<Todo> {
+    private static final String[] COLUMNS = {
+        "id", "title", "description", "completed", "created_at",
+        "updated_at", "completed_at", "priority", "category", "version"
+    };
+
+    @Override
+    public Todo map(ResultSet rs, StatementContext ctx) throws SQLException {
+        return specialize(rs, ctx).map(rs, ctx);
+    }
+
+    @Override
+    public RowMapper<Todo> specialize(ResultSet rs, StatementContext ctx) throws SQLException {
+        int[] index = resolve(rs.getMetaData());
+        int id = index[0];
+        int title = index[1];
+        int description = index[2];
+        int completed = index[3];
+        int createdAt = index[4];
+        int updatedAt = index[5];
+        int completedAt = index[6];
+        int priority = index[7];
+        int category = index[8];
+        int version = index[9];
+
+        return (row, context) -> {
+            Todo todo = new Todo();
+            if (id > 0) todo.setId(getLong(row, id));
+            if (title > 0) todo.setTitle(row.getString(title));
+            if (description > 0) todo.setDescription(row.getString(description));
+            if (completed > 0) todo.setCompleted(row.getBoolean(completed));
+            if (createdAt > 0) todo.setCreatedAt(row.getObject(createdAt, LocalDateTime.class));
+            if (updatedAt > 0) todo.setUpdatedAt(row.getObject(updatedAt, LocalDateTime.class));
+            if (completedAt > 0) todo.setCompletedAt(row.getObject(completedAt, LocalDateTime.class));
+            if (priority > 0) todo.setPriority(row.getString(priority));
+            if (category > 0) todo.setCategory(row.getString(category));
+            if (version > 0) todo.setVersion(getLong(row, version));
+            return todo;
+        };
+    }
+
+    // JDBC column indexes start at 1, so 0 marks a column that is not selected
+    private static int[] resolve(ResultSetMetaData metaData) throws SQLException {
+        int[] index = new int[COLUMNS.length];
+        for (int column = metaData.getColumnCount(); column >= 1; column--) {
+            String label = metaData.getColumnLabel(column);
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (COLUMNS[i].equalsIgnoreCase(label)) {
+                    index[i] = column;
+                    break;
+                }
+            }
+        }
+        return index;
+    }
+
+    private static Long getLong(ResultSet rs, int column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+}
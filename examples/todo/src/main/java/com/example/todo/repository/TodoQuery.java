@@ -0,0 +1,124 @@
+package com.example.todo.repository;
+
+/**
+ * Filter, sort and paging specification for todo listings.
+ *
+ * Every filter is optional and any combination can be used together;
+ * {@link TodoRepository#find(TodoQuery)} renders the specification as a single
+ * parameterized statement.
+ */
+public class TodoQuery {
+    public enum Sort {
+        CREATED_AT_DESC,
+        ID_ASC,
+        RELEVANCE
+    }
+
+    static final int COMPLETED = 1;
+    static final int CATEGORY = 1 << 1;
+    static final int PRIORITY = 1 << 2;
+    static final int SEARCH = 1 << 3;
+    static final int AFTER = 1 << 4;
+    static final int LIMIT = 1 << 5;
+    static final int SORT_SHIFT = 6;
+    static final int SHAPES = Sort.values().length << SORT_SHIFT;
+
+    private Boolean completed;
+    private String category;
+    private String priority;
+    private String search;
+    private Sort sort;
+    private KeysetCursor after;
+    private int limit;
+
+    public TodoQuery completed(Boolean completed) {
+        this.completed = completed;
+        return this;
+    }
+
+    public TodoQuery category(String category) {
+        this.category = category;
+        return this;
+    }
+
+    public TodoQuery priority(String priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    public TodoQuery search(String search) {
+        this.search = search;
+        return this;
+    }
+
+    public TodoQuery sort(Sort sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    public TodoQuery after(KeysetCursor after) {
+        this.after = after;
+        return this;
+    }
+
+    public TodoQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public Boolean getCompleted() { return completed; }
+    public String getCategory() { return category; }
+    public String getPriority() { return priority; }
+    public String getSearch() { return search; }
+    public KeysetCursor getAfter() { return after; }
+    public int getLimit() { return limit; }
+
+    // Without an explicit sort, searches rank by relevance and unfiltered listings keep the id order of findAll()
+    public Sort getSort() {
+        if (sort != null) {
+            return sort;
+        }
+        if (search != null) {
+            return Sort.RELEVANCE;
+        }
+        return hasFilters() ? Sort.CREATED_AT_DESC : Sort.ID_ASC;
+    }
+
+    public boolean hasFilters() {
+        return completed != null || category != null || priority != null || search != null;
+    }
+
+    /**
+     * The specification in canonical form: queries that select the same rows
+     * in the same order have the same key, however the request spelled them.
+     */
+    public String key() {
+        StringBuilder key = new StringBuilder(getSort().name());
+        append(key, "completed", completed == null ? null : completed.toString());
+        append(key, "category", category);
+        append(key, "priority", priority);
+        append(key, "search", search);
+        append(key, "after", after == null ? null : after.encode());
+        append(key, "limit", limit > 0 ? Integer.toString(limit) : null);
+        return key.toString();
+    }
+
+    // Length-prefixed, so that no value can pass for the next field
+    private static void append(StringBuilder key, String name, String value) {
+        if (value != null) {
+            key.append(';').append(name).append('=').append(value.length()).append(':').append(value);
+        }
+    }
+
+    // Queries with the same set of filters share one SQL text, and therefore one prepared statement
+    int shape() {
+        int shape = getSort().ordinal() << SORT_SHIFT;
+        if (completed != null) shape |= COMPLETED;
+        if (category != null) shape |= CATEGORY;
+        if (priority != null) shape |= PRIORITY;
+        if (search != null) shape |= SEARCH;
+        if (after != null) shape |= AFTER;
+        if (limit > 0) shape |= LIMIT;
+        return shape;
+    }
+}
@@ -2,14 +2,43 @@ package com.example.todo.repository;
 
 import com.example.todo.model.Todo;
 import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import org.jdbi.v3.core.statement.Query;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
 
 public class TodoRepository extends BaseRepository<Todo, Long> {
+    // Explicit list keeps derived columns such as search_vector out of every row
+    static final String COLUMNS = "id, title, description, completed, created_at, updated_at, " +
+                                  "completed_at, priority, category, version";
+    private static final String QUALIFIED_COLUMNS = "t." + COLUMNS.replace(", ", ", t.");
+    private static final int MAX_SEARCH_TERMS = 8;
+    private static final int BATCH_CHUNK_SIZE = 500;
+    
+    private static final AtomicReferenceArray<String> QUERY_SQL = new AtomicReferenceArray<>(TodoQuery.SHAPES);
+    private static final int CACHE_MAX_SIZE = 10_000;
+    private static final Duration CACHE_TTL = Duration.ofSeconds(30);
     
     public TodoRepository() {
-        super("todos", Todo.class);
+        this(DatabaseManager.getInstance().getRegistry());
+    }
+    
+    public TodoRepository(Jdbi jdbi) {
+        this(DataSourceRegistry.of(jdbi));
+    }
+    
+    public TodoRepository(DataSourceRegistry registry) {
+        super(registry, "todos", Todo.class, COLUMNS, new TodoMapper());
+        enableCache(CACHE_MAX_SIZE, CACHE_TTL, Todo::new);
     }
     
     @Override
@@ -33,6 +62,7 @@ public class TodoRepository extends BaseRepository<Todo, Long> {
             .one();
         
         todo.setId(newId);
+        todo.setVersion(0L);
         return todo;
     }
     
@@ -47,7 +77,8 @@ public class TodoRepository extends BaseRepository<Todo, Long> {
                            "updated_at = :updatedAt, " +
                            "completed_at = :completedAt, " +
                            "priority = :priority, " +
-                           "category = :category " +
+                           "category = :category, " +
+                           "version = version + 1 " +
                            "WHERE id = :id")
             .bind("title", todo.getTitle())
             .bind("description", todo.getDescription())
@@ -62,49 +93,350 @@ public class TodoRepository extends BaseRepository<Todo, Long> {
         return todo;
     }
     
-    // Custom query methods
-    public List<Todo> findByCompleted(boolean completed) {
-        return jdbi.withHandle(handle ->
-            handle.createQuery("SELECT * FROM todos WHERE completed = :completed ORDER BY created_at DESC")
-                .bind("completed", completed)
-                .mapToBean(Todo.class)
-                .list()
+    // Single-statement mutations: "not found" is an empty result, not a prior SELECT
+    public Optional<Todo> toggleCompleted(Long id, LocalDateTime now) {
+        Optional<Todo> toggled = jdbi.withHandle(handle ->
+            handle.createQuery("UPDATE todos SET " +
+                               "completed = NOT completed, " +
+                               "completed_at = CASE WHEN completed THEN NULL ELSE :now END, " +
+                               "updated_at = :now, " +
+                               "version = version + 1 " +
+                               "WHERE id = :id RETURNING " + COLUMNS)
+                .bind("now", now)
+                .bind("id", id)
+                .map(rowMapper)
+                .findOne()
         );
+        written(id);
+        return toggled;
     }
     
-    public List<Todo> findByCategory(String category) {
-        return jdbi.withHandle(handle ->
-            handle.createQuery("SELECT * FROM todos WHERE category = :category ORDER BY created_at DESC")
-                .bind("category", category)
-                .mapToBean(Todo.class)
-                .list()
+    // When changes carries a version, the row is only updated if it still has that version
+    public Optional<UpdateResult> updateFields(Long id, Todo changes, LocalDateTime now) {
+        Optional<UpdateResult> updated = jdbi.withHandle(handle -> {
+            Query query = handle.createQuery("UPDATE todos t SET " +
+                                             "title = :title, " +
+                                             "description = :description, " +
+                                             "completed = :completed, " +
+                                             "completed_at = CASE WHEN :completed THEN COALESCE(t.completed_at, :now) ELSE NULL END, " +
+                                             "priority = :priority, " +
+                                             "category = :category, " +
+                                             "updated_at = :now, " +
+                                             "version = t.version + 1 " +
+                                             "FROM (SELECT id, completed FROM todos WHERE id = :id FOR UPDATE) prev " +
+                                             "WHERE t.id = prev.id" +
+                                             (changes.getVersion() == null ? "" : " AND t.version = :version") +
+                                             " RETURNING " + QUALIFIED_COLUMNS + ", prev.completed AS previous_completed")
+                .bind("title", changes.getTitle())
+                .bind("description", changes.getDescription())
+                .bind("completed", changes.isCompleted())
+                .bind("priority", changes.getPriority())
+                .bind("category", changes.getCategory())
+                .bind("now", now)
+                .bind("id", id);
+            if (changes.getVersion() != null) {
+                query.bind("version", changes.getVersion());
+            }
+            return query.map((rs, ctx) -> new UpdateResult(rowMapper.map(rs, ctx), rs.getBoolean("previous_completed")))
+                        .findOne();
+        });
+        written(id);
+        return updated;
+    }
+    
+    public Optional<Todo> deleteReturning(Long id) {
+        Optional<Todo> deleted = jdbi.withHandle(handle ->
+            handle.createQuery("DELETE FROM todos WHERE id = :id RETURNING " + COLUMNS)
+                .bind("id", id)
+                .map(rowMapper)
+                .findOne()
         );
+        written(id);
+        return deleted;
     }
     
-    public List<Todo> findByPriority(String priority) {
+    // One transaction; each kind of operation runs as chunked JDBC batches (creates, then updates, then deletes)
+    public BatchOutcome executeBatch(List<Todo> creates, List<Todo> updates, List<Long> deletes, LocalDateTime now) {
+        BatchOutcome outcome = jdbi.inTransaction(handle -> {
+            long[] createdIds = new long[creates.size()];
+            for (int start = 0; start < creates.size(); start += BATCH_CHUNK_SIZE) {
+                List<Todo> chunk = creates.subList(start, Math.min(start + BATCH_CHUNK_SIZE, creates.size()));
+                PreparedBatch batch = handle.prepareBatch(
+                    "INSERT INTO todos (title, description, completed, created_at, completed_at, priority, category) " +
+                    "VALUES (:title, :description, :completed, :createdAt, :completedAt, :priority, :category)");
+                for (Todo todo : chunk) {
+                    batch.bind("title", todo.getTitle())
+                         .bind("description", todo.getDescription())
+                         .bind("completed", todo.isCompleted())
+                         .bind("createdAt", todo.getCreatedAt())
+                         .bind("completedAt", todo.getCompletedAt())
+                         .bind("priority", todo.getPriority())
+                         .bind("category", todo.getCategory())
+                         .add();
+                }
+                List<Long> ids = batch.executePreparedBatch("id").mapTo(Long.class).list();
+                for (int i = 0; i < ids.size(); i++) {
+                    createdIds[start + i] = ids.get(i);
+                }
+            }
+            
+            int[] updated = new int[updates.size()];
+            List<Long> versionMisses = new ArrayList<>();
+            for (int start = 0; start < updates.size(); start += BATCH_CHUNK_SIZE) {
+                List<Todo> chunk = updates.subList(start, Math.min(start + BATCH_CHUNK_SIZE, updates.size()));
+                PreparedBatch batch = handle.prepareBatch(
+                    "UPDATE todos SET " +
+                    "title = :title, " +
+                    "description = :description, " +
+                    "completed = :completed, " +
+                    "completed_at = CASE WHEN :completed THEN COALESCE(completed_at, :now) ELSE NULL END, " +
+                    "priority = :priority, " +
+                    "category = :category, " +
+                    "updated_at = :now, " +
+                    "version = version + 1 " +
+                    "WHERE id = :id AND (CAST(:version AS BIGINT) IS NULL OR version = :version)");
+                for (Todo todo : chunk) {
+                    batch.bind("title", todo.getTitle())
+                         .bind("description", todo.getDescription())
+                         .bind("completed", todo.isCompleted())
+                         .bind("priority", todo.getPriority())
+                         .bind("category", todo.getCategory())
+                         .bind("now", now)
+                         .bind("id", todo.getId())
+                         .bindByType("version", todo.getVersion(), Long.class)
+                         .add();
+                }
+                int[] counts = batch.execute();
+                for (int i = 0; i < counts.length; i++) {
+                    updated[start + i] = counts[i];
+                    if (counts[i] == 0 && chunk.get(i).getVersion() != null) {
+                        versionMisses.add(chunk.get(i).getId());
+                    }
+                }
+            }
+            
+            int[] deleted = new int[deletes.size()];
+            for (int start = 0; start < deletes.size(); start += BATCH_CHUNK_SIZE) {
+                List<Long> chunk = deletes.subList(start, Math.min(start + BATCH_CHUNK_SIZE, deletes.size()));
+                PreparedBatch batch = handle.prepareBatch("DELETE FROM todos WHERE id = :id");
+                for (Long id : chunk) {
+                    batch.bind("id", id).add();
+                }
+                int[] counts = batch.execute();
+                System.arraycopy(counts, 0, deleted, start, counts.length);
+            }
+            
+            // A failed versioned update is a conflict if the row still exists
+            Set<Long> conflicts = versionMisses.isEmpty()
+                ? Set.of()
+                : new HashSet<>(handle.createQuery("SELECT id FROM todos WHERE id = ANY(:ids)")
+                                      .bindArray("ids", Long.class, versionMisses)
+                                      .mapTo(Long.class)
+                                      .list());
+            
+            return new BatchOutcome(createdIds, updated, deleted, conflicts);
+        });
+        
+        // Creates evict nothing but are writes all the same
+        registry.recordWrite();
+        updates.forEach(todo -> evictCached(todo.getId()));
+        deletes.forEach(this::evictCached);
+        return outcome;
+    }
+    
+    // Primary: decides between 404 and 409 right after a failed write
+    public boolean existsById(Long id) {
         return jdbi.withHandle(handle ->
-            handle.createQuery("SELECT * FROM todos WHERE priority = :priority ORDER BY created_at DESC")
-                .bind("priority", priority)
-                .mapToBean(Todo.class)
-                .list()
+            handle.createQuery("SELECT EXISTS (SELECT 1 FROM todos WHERE id = :id)")
+                .bind("id", id)
+                .mapTo(Boolean.class)
+                .one()
         );
     }
     
+    public PgNotificationRelay createNotificationRelay(String channel, Consumer<String> consumer) {
+        return new PgNotificationRelay(jdbi, channel, consumer);
+    }
+    
+    // Custom query methods
+    public List<Todo> find(TodoQuery query) {
+        return readJdbi().withHandle(handle -> bindQuery(handle, query).map(rowMapper).list());
+    }
+    
+    public void stream(TodoQuery query, Consumer<Todo> action) {
+        // PostgreSQL only honours the fetch size inside a transaction
+        readJdbi().useTransaction(handle ->
+            bindQuery(handle, query)
+                .setFetchSize(STREAM_FETCH_SIZE)
+                .map(rowMapper)
+                .forEach(action)
+        );
+    }
+    
+    public List<Todo> findByCompleted(boolean completed) {
+        return find(new TodoQuery().completed(completed));
+    }
+    
+    public List<Todo> findByCategory(String category) {
+        return find(new TodoQuery().category(category));
+    }
+    
+    public List<Todo> findByPriority(String priority) {
+        return find(new TodoQuery().priority(priority));
+    }
+    
     public List<Todo> searchByTitle(String searchTerm) {
+        return find(new TodoQuery().search(searchTerm));
+    }
+    
+    // Primary: the service reconciles its cached statistics against this
+    public Counts countTotalAndCompleted() {
         return jdbi.withHandle(handle ->
-            handle.createQuery("SELECT * FROM todos WHERE LOWER(title) LIKE LOWER(:search) ORDER BY created_at DESC")
-                .bind("search", "%" + searchTerm + "%")
-                .mapToBean(Todo.class)
-                .list()
+            handle.createQuery("SELECT COUNT(*) AS total, COUNT(*) FILTER (WHERE completed) AS completed FROM todos")
+                .map((rs, ctx) -> new Counts(rs.getLong("total"), rs.getLong("completed")))
+                .one()
         );
     }
     
     public long countByCompleted(boolean completed) {
-        return jdbi.withHandle(handle ->
+        return readJdbi().withHandle(handle ->
             handle.createQuery("SELECT COUNT(*) FROM todos WHERE completed = :completed")
                 .bind("completed", completed)
                 .mapTo(Long.class)
                 .one()
         );
     }
-}
\ No newline at end of file
+    
+    private Query bindQuery(Handle handle, TodoQuery query) {
+        Query statement = handle.createQuery(sqlFor(query.shape()));
+        if (query.getCompleted() != null) {
+            statement.bind("completed", query.getCompleted().booleanValue());
+        }
+        if (query.getCategory() != null) {
+            statement.bind("category", query.getCategory());
+        }
+        if (query.getPriority() != null) {
+            statement.bind("priority", query.getPriority());
+        }
+        if (query.getSearch() != null) {
+            statement.bind("search", toPrefixTsQuery(query.getSearch()));
+        }
+        if (query.getAfter() != null) {
+            statement.bind("afterId", query.getAfter().getId());
+            if (query.getSort() == TodoQuery.Sort.CREATED_AT_DESC) {
+                statement.bind("afterCreatedAt", query.getAfter().getCreatedAt());
+            }
+        }
+        if (query.getLimit() > 0) {
+            statement.bind("limit", query.getLimit());
+        }
+        return statement;
+    }
+    
+    // "Buy milk!" becomes "buy:* & milk:*": every term must match, as a prefix of a title or description word
+    static String toPrefixTsQuery(String search) {
+        StringBuilder tsQuery = new StringBuilder();
+        int terms = 0;
+        for (String term : search.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            if (terms > 0) {
+                tsQuery.append(" & ");
+            }
+            tsQuery.append(term).append(":*");
+            if (++terms == MAX_SEARCH_TERMS) {
+                break;
+            }
+        }
+        return terms == 0 ? null : tsQuery.toString();
+    }
+    
+    static String sqlFor(int shape) {
+        String sql = QUERY_SQL.get(shape);
+        if (sql == null) {
+            sql = renderSql(shape);
+            QUERY_SQL.set(shape, sql);
+        }
+        return sql;
+    }
+    
+    private static String renderSql(int shape) {
+        TodoQuery.Sort sort = TodoQuery.Sort.values()[shape >>> TodoQuery.SORT_SHIFT];
+        List<String> conditions = new ArrayList<>();
+        
+        if ((shape & TodoQuery.COMPLETED) != 0) conditions.add("completed = :completed");
+        if ((shape & TodoQuery.CATEGORY) != 0) conditions.add("category = :category");
+        if ((shape & TodoQuery.PRIORITY) != 0) conditions.add("priority = :priority");
+        if ((shape & TodoQuery.SEARCH) != 0) conditions.add("search_vector @@ to_tsquery('simple', :search)");
+        if ((shape & TodoQuery.AFTER) != 0) {
+            conditions.add(sort == TodoQuery.Sort.ID_ASC
+                ? "id > :afterId"
+                : "(created_at, id) < (:afterCreatedAt, :afterId)");
+        }
+        
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM todos");
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        switch (sort) {
+            case ID_ASC:
+                sql.append(" ORDER BY id");
+                break;
+            case RELEVANCE:
+                sql.append(" ORDER BY ts_rank(search_vector, to_tsquery('simple', :search)) DESC, id DESC");
+                break;
+            default:
+                sql.append(" ORDER BY created_at DESC, id DESC");
+        }
+        if ((shape & TodoQuery.LIMIT) != 0) {
+            sql.append(" LIMIT :limit");
+        }
+        return sql.toString();
+    }
+    
+    public static class UpdateResult {
+        private final Todo todo;
+        private final boolean previouslyCompleted;
+        
+        public UpdateResult(Todo todo, boolean previouslyCompleted) {
+            this.todo = todo;
+            this.previouslyCompleted = previouslyCompleted;
+        }
+        
+        public Todo getTodo() { return todo; }
+        public boolean wasCompleted() { return previouslyCompleted; }
+    }
+    
+    public static class BatchOutcome {
+        private final long[] createdIds;
+        private final int[] updated;
+        private final int[] deleted;
+        private final Set<Long> conflicts;
+        
+        public BatchOutcome(long[] createdIds, int[] updated, int[] deleted, Set<Long> conflicts) {
+            this.createdIds = createdIds;
+            this.updated = updated;
+            this.deleted = deleted;
+            this.conflicts = conflicts;
+        }
+        
+        public long getCreatedId(int index) { return createdIds[index]; }
+        public boolean isUpdated(int index) { return updated[index] > 0; }
+        public boolean isDeleted(int index) { return deleted[index] > 0; }
+        public boolean isConflict(Long id) { return conflicts.contains(id); }
+    }
+    
+    public static class Counts {
+        private final long total;
+        private final long completed;
+        
+        public Counts(long total, long completed) {
+            this.total = total;
+            this.completed = completed;
+        }
+        
+        public long getTotal() { return total; }
+        public long getCompleted() { return completed; }
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.todo.service;
+
+public class ConflictException extends ValidationException {
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.todo.service;
+
+import com.example.todo.model.Todo;
+import com.example.todo.model.TodoEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-process fan-out of {@link TodoEvent}s to the subscribers of the change feed.
+ *
+ * Publishing never blocks on a subscriber: events are offered to bounded
+ * per-subscriber buffers and a subscriber whose buffer is full is evicted, so
+ * it reconnects and resumes from the history instead of slowing everyone
+ * down. The last {@link #HISTORY_SIZE} events are kept for {@code Last-Event-ID}
+ * resumption; event ids embed an instance tag, so ids issued before a restart
+ * or by another node are recognized as unknown.
+ */
+public class TodoEventBroadcaster {
+    private static final Logger LOGGER = Logger.getLogger(TodoEventBroadcaster.class.getName());
+
+    public static final int HISTORY_SIZE = 256;
+    private static final long HEARTBEAT_SECONDS = 15;
+    // Events waiting for the relay while the database is slow; beyond that they are not relayed
+    private static final int RELAY_QUEUE_SIZE = 1024;
+
+    public interface Subscriber {
+        /** Buffers an event without blocking; false when the buffer is full. */
+        boolean offer(TodoEvent event);
+
+        /** Writes buffered events, called on the broadcaster thread. */
+        void flush();
+
+        /** Asks for a keep-alive message when nothing else is pending. */
+        void heartbeat();
+
+        void close();
+    }
+
+    private final String instanceTag = Long.toString(System.nanoTime() ^ System.currentTimeMillis(), 36);
+    private final TodoEvent[] history = new TodoEvent[HISTORY_SIZE];
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private long sequence;
+    private volatile Consumer<TodoEvent> relay;
+    private volatile ScheduledExecutorService dispatcher;
+    private volatile ExecutorService relayExecutor;
+
+    public synchronized void start() {
+        if (dispatcher != null) {
+            return;
+        }
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "todo-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleWithFixedDelay(this::heartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        // A relay waiting for a pool connection must not hold up flushes and heartbeats; one thread keeps events in order
+        relayExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(RELAY_QUEUE_SIZE),
+                                               runnable -> {
+                                                   Thread thread = new Thread(runnable, "todo-events-relay");
+                                                   thread.setDaemon(true);
+                                                   return thread;
+                                               },
+                                               (task, executor) -> LOGGER.warning("Event relay is backed up; event not sent to other nodes"));
+    }
+
+    public synchronized void stop() {
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+            dispatcher = null;
+        }
+        if (relayExecutor != null) {
+            relayExecutor.shutdownNow();
+            relayExecutor = null;
+        }
+        subscribers.forEach(Subscriber::close);
+        subscribers.clear();
+    }
+
+    public String getInstanceTag() {
+        return instanceTag;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /** Also hands every locally published event to {@code relay}, in order, on a thread of its own. */
+    public void setRelay(Consumer<TodoEvent> relay) {
+        this.relay = relay;
+    }
+
+    /** Delivers a local change to subscribers and to the relay. */
+    public TodoEvent publish(String type, Long todoId, Todo todo) {
+        TodoEvent event = deliver(type, todoId, todo);
+        Consumer<TodoEvent> target = relay;
+        if (target != null) {
+            relay(() -> target.accept(event));
+        }
+        return event;
+    }
+
+    /** Delivers a change to subscribers only, e.g. one received from another node. */
+    public TodoEvent deliver(String type, Long todoId, Todo todo) {
+        TodoEvent event;
+        List<Subscriber> evicted = new ArrayList<>();
+        synchronized (this) {
+            sequence++;
+            event = new TodoEvent(sequence, instanceTag + "-" + sequence, type, todoId, todo);
+            history[(int) (sequence % HISTORY_SIZE)] = event;
+            for (Subscriber subscriber : subscribers) {
+                if (!subscriber.offer(event)) {
+                    subscribers.remove(subscriber);
+                    evicted.add(subscriber);
+                }
+            }
+        }
+        // Closed outside the lock: closing completes the response, whose listeners unsubscribe
+        evicted.forEach(Subscriber::close);
+        dispatch(this::flushAll);
+        return event;
+    }
+
+    /**
+     * Registers a subscriber, first buffering the events it missed after
+     * {@code lastEventId}. When those are no longer in the history, or the id
+     * was not issued by this instance, a {@link TodoEvent#RESET} is buffered
+     * instead.
+     */
+    public void subscribe(Subscriber subscriber, String lastEventId) {
+        synchronized (this) {
+            if (lastEventId != null) {
+                long last = sequenceOf(lastEventId);
+                if (last < 0 || last > sequence || sequence - last > HISTORY_SIZE) {
+                    subscriber.offer(new TodoEvent(sequence, instanceTag + "-" + sequence, TodoEvent.RESET, null, null));
+                } else {
+                    for (long missed = last + 1; missed <= sequence; missed++) {
+                        subscriber.offer(history[(int) (missed % HISTORY_SIZE)]);
+                    }
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        dispatch(subscriber::flush);
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    private long sequenceOf(String eventId) {
+        int separator = eventId.lastIndexOf('-');
+        if (separator < 0 || !eventId.regionMatches(0, instanceTag, 0, separator) || separator != instanceTag.length()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void flushAll() {
+        subscribers.forEach(Subscriber::flush);
+    }
+
+    private void heartbeat() {
+        subscribers.forEach(subscriber -> {
+            subscriber.heartbeat();
+            subscriber.flush();
+        });
+    }
+
+    private void relay(Runnable task) {
+        ExecutorService executor = relayExecutor;
+        if (executor == null) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Todo event relay failed", e);
+            }
+        });
+    }
+
+    private void dispatch(Runnable task) {
+        ScheduledExecutorService executor = dispatcher;
+        if (executor == null) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Todo event dispatch failed", e);
+            }
+        });
+    }
+}
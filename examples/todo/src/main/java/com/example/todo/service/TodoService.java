@@ -1,36 +1,104 @@
 package com.example.todo.service;
 
+import com.example.todo.model.BatchOperation;
+import com.example.todo.model.BatchResult;
+import com.example.todo.model.Page;
 import com.example.todo.model.Todo;
+import com.example.todo.model.TodoEvent;
+import com.example.todo.repository.EntityCache;
+import com.example.todo.repository.KeysetCursor;
+import com.example.todo.repository.PgNotificationRelay;
+import com.example.todo.repository.TodoQuery;
 import com.example.todo.repository.TodoRepository;
 
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class TodoService {
+    private static final Logger LOGGER = Logger.getLogger(TodoService.class.getName());
+    
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int DEFAULT_SEARCH_LIMIT = 100;
+    public static final int MAX_BATCH_SIZE = 10_000;
+    // Larger batches publish a single reset instead of one event per item
+    public static final int MAX_BATCH_EVENTS = 100;
+    
     private final TodoRepository todoRepository;
+    private final TodoStatistics statistics;
+    private final TodoEventBroadcaster events = new TodoEventBroadcaster();
+    private PgNotificationRelay relay;
+    
+    // Collection validators: bumped after every committed write made through this service
+    private final AtomicLong modifications = new AtomicLong();
+    private final String instanceTag = Long.toString(System.currentTimeMillis(), 36);
+    private volatile long lastModified = System.currentTimeMillis();
     
     public TodoService() {
-        this.todoRepository = new TodoRepository();
+        this(new TodoRepository());
     }
     
     public TodoService(TodoRepository todoRepository) {
         this.todoRepository = todoRepository;
+        this.statistics = new TodoStatistics(todoRepository);
+    }
+    
+    public void start() {
+        statistics.start();
+        events.start();
+        if (relay != null) {
+            relay.start();
+        }
+    }
+    
+    public void shutdown() {
+        if (relay != null) {
+            relay.stop();
+        }
+        events.stop();
+        statistics.stop();
+    }
+    
+    /**
+     * Shares the change feed with other nodes through PostgreSQL
+     * {@code LISTEN/NOTIFY} on {@code channel}. Must be called before
+     * {@link #start()}; the listener holds one pooled connection.
+     */
+    public synchronized void enableEventRelay(String channel) {
+        if (relay != null) {
+            return;
+        }
+        relay = todoRepository.createNotificationRelay(channel, this::onRemoteEvent);
+        // Notifications carry only ids: payloads are limited to 8000 bytes and receivers reload the row anyway
+        events.setRelay(event -> relay.notify(events.getInstanceTag() + "|" + event.getType() + "|" +
+                                              (event.getTodoId() == null ? "" : event.getTodoId())));
+    }
+    
+    public TodoEventBroadcaster getEvents() {
+        return events;
     }
     
     public Todo create(Todo todo) throws ValidationException {
         validateTodo(todo);
         
         // Set defaults for new todo
-        if (todo.getCreatedAt() == null) {
-            todo.setCreatedAt(LocalDateTime.now());
-        }
-        if (todo.getPriority() == null || todo.getPriority().trim().isEmpty()) {
-            todo.setPriority("MEDIUM");
-        }
+        prepareForCreate(todo, LocalDateTime.now());
         
         try {
-            return todoRepository.save(todo);
+            Todo created = todoRepository.save(todo);
+            statistics.onCreated(created);
+            recordModification();
+            events.publish(TodoEvent.CREATED, created.getId(), new Todo(created));
+            return created;
         } catch (RuntimeException e) {
             if (e.getMessage() != null && e.getMessage().contains("Failed to setup database connection")) {
                 throw new ValidationException("Database connection failed. Please check if PostgreSQL is running and properly configured.");
@@ -64,6 +132,51 @@ public class TodoService {
         }
     }
     
+    public List<Todo> list(TodoQuery query) throws ValidationException {
+        TodoQuery normalized = normalize(query);
+        if (normalized == null) {
+            return List.of();
+        }
+        // Relevance-ranked searches return the best matches, not every row containing a prefix
+        normalized.limit(normalized.getSort() == TodoQuery.Sort.RELEVANCE ? DEFAULT_SEARCH_LIMIT : 0);
+        try {
+            return todoRepository.find(normalized);
+        } catch (RuntimeException e) {
+            throw databaseError(e, "retrieving todos");
+        }
+    }
+    
+    public Page<Todo> find(TodoQuery query) throws ValidationException {
+        int pageSize = validatePageSize(query.getLimit());
+        TodoQuery normalized = normalize(query);
+        if (normalized == null) {
+            return new Page<>(List.of(), pageSize, null);
+        }
+        try {
+            List<Todo> rows = todoRepository.find(normalized.limit(pageSize + 1));
+            if (normalized.getSort() == TodoQuery.Sort.RELEVANCE) {
+                return new Page<>(rows.size() > pageSize ? rows.subList(0, pageSize) : rows, pageSize, null);
+            }
+            return toPage(rows, pageSize);
+        } catch (RuntimeException e) {
+            throw databaseError(e, "retrieving todos");
+        }
+    }
+    
+    public void stream(TodoQuery query, Consumer<Todo> action) throws ValidationException {
+        TodoQuery normalized = normalize(query);
+        if (normalized == null) {
+            return;
+        }
+        try {
+            todoRepository.stream(normalized.limit(0), action);
+        } catch (UncheckedIOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw databaseError(e, "streaming todos");
+        }
+    }
+    
     public List<Todo> findByCompleted(boolean completed) {
         return todoRepository.findByCompleted(completed);
     }
@@ -94,22 +207,25 @@ public class TodoService {
             throw new ValidationException("Invalid todo ID");
         }
         
-        Optional<Todo> existing = todoRepository.findById(id);
-        if (existing.isEmpty()) {
-            throw new ValidationException("Todo not found with ID: " + id);
-        }
-        
         validateTodo(updatedTodo);
         
-        Todo todo = existing.get();
-        todo.setTitle(updatedTodo.getTitle());
-        todo.setDescription(updatedTodo.getDescription());
-        todo.setCompleted(updatedTodo.isCompleted());
-        todo.setPriority(updatedTodo.getPriority());
-        todo.setCategory(updatedTodo.getCategory());
-        todo.setUpdatedAt(LocalDateTime.now());
+        Optional<TodoRepository.UpdateResult> updated = todoRepository.updateFields(id, updatedTodo, LocalDateTime.now());
+        if (updated.isPresent()) {
+            Todo todo = updated.get().getTodo();
+            if (todo.isCompleted() != updated.get().wasCompleted()) {
+                statistics.onCompletedChanged(todo.isCompleted());
+            }
+            recordModification();
+            events.publish(TodoEvent.UPDATED, id, new Todo(todo));
+            return todo;
+        }
         
-        return todoRepository.save(todo);
+        // Only the failure path pays for telling a stale version apart from a missing row
+        if (updatedTodo.getVersion() != null && todoRepository.existsById(id)) {
+            throw new ConflictException("Todo " + id + " was modified by another request (expected version " +
+                                        updatedTodo.getVersion() + ")");
+        }
+        throw new ValidationException("Todo not found with ID: " + id);
     }
     
     public Todo toggleCompleted(Long id) throws ValidationException {
@@ -117,16 +233,12 @@ public class TodoService {
             throw new ValidationException("Invalid todo ID");
         }
         
-        Optional<Todo> existing = todoRepository.findById(id);
-        if (existing.isEmpty()) {
-            throw new ValidationException("Todo not found with ID: " + id);
-        }
-        
-        Todo todo = existing.get();
-        todo.setCompleted(!todo.isCompleted());
-        todo.setUpdatedAt(LocalDateTime.now());
-        
-        return todoRepository.save(todo);
+        Todo toggled = todoRepository.toggleCompleted(id, LocalDateTime.now())
+            .orElseThrow(() -> new ValidationException("Todo not found with ID: " + id));
+        statistics.onCompletedChanged(toggled.isCompleted());
+        recordModification();
+        events.publish(TodoEvent.TOGGLED, id, new Todo(toggled));
+        return toggled;
     }
     
     public void delete(Long id) throws ValidationException {
@@ -134,21 +246,156 @@ public class TodoService {
             throw new ValidationException("Invalid todo ID");
         }
         
-        Optional<Todo> existing = todoRepository.findById(id);
-        if (existing.isEmpty()) {
-            throw new ValidationException("Todo not found with ID: " + id);
+        Todo deleted = todoRepository.deleteReturning(id)
+            .orElseThrow(() -> new ValidationException("Todo not found with ID: " + id));
+        statistics.onDeleted(deleted);
+        recordModification();
+        events.publish(TodoEvent.DELETED, id, null);
+    }
+    
+    public List<BatchResult> executeBatch(List<BatchOperation> operations) throws ValidationException {
+        if (operations == null || operations.isEmpty()) {
+            throw new ValidationException("Batch cannot be empty");
+        }
+        if (operations.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("Batch cannot exceed " + MAX_BATCH_SIZE + " operations");
+        }
+        
+        // Everything is validated before the first statement runs: one invalid item rejects the batch
+        List<Todo> creates = new ArrayList<>();
+        List<Todo> updates = new ArrayList<>();
+        List<Long> deletes = new ArrayList<>();
+        // The repository runs creates, then updates, then deletes; with each id named once that
+        // grouping gives the same outcome as running the operations in request order
+        Set<Long> ids = new HashSet<>();
+        LocalDateTime now = LocalDateTime.now();
+        
+        for (int i = 0; i < operations.size(); i++) {
+            BatchOperation operation = operations.get(i);
+            try {
+                if (operation == null || operation.getOp() == null) {
+                    throw new ValidationException("Operation type is required");
+                }
+                switch (operation.getOp()) {
+                    case BatchOperation.CREATE:
+                        validateTodo(operation.getTodo());
+                        creates.add(prepareForCreate(operation.getTodo(), now));
+                        break;
+                    case BatchOperation.UPDATE:
+                        validateBatchId(operation.getId(), ids);
+                        validateTodo(operation.getTodo());
+                        Todo changes = new Todo(operation.getTodo());
+                        changes.setId(operation.getId());
+                        updates.add(changes);
+                        break;
+                    case BatchOperation.DELETE:
+                        validateBatchId(operation.getId(), ids);
+                        deletes.add(operation.getId());
+                        break;
+                    default:
+                        throw new ValidationException("Operation must be create, update or delete");
+                }
+            } catch (ValidationException e) {
+                throw new ValidationException("Operation #" + i + ": " + e.getMessage());
+            }
+        }
+        
+        TodoRepository.BatchOutcome outcome;
+        try {
+            outcome = todoRepository.executeBatch(creates, updates, deletes, now);
+        } catch (RuntimeException e) {
+            throw databaseError(e, "executing batch");
+        }
+        
+        List<BatchResult> results = new ArrayList<>(operations.size());
+        int created = 0;
+        int updated = 0;
+        int deleted = 0;
+        for (int i = 0; i < operations.size(); i++) {
+            BatchOperation operation = operations.get(i);
+            switch (operation.getOp()) {
+                case BatchOperation.CREATE:
+                    long id = outcome.getCreatedId(created);
+                    creates.get(created).setId(id);
+                    statistics.onCreated(creates.get(created++));
+                    results.add(new BatchResult(i, operation.getOp(), id, 201, null));
+                    break;
+                case BatchOperation.UPDATE:
+                    results.add(outcome.isUpdated(updated++)
+                        ? new BatchResult(i, operation.getOp(), operation.getId(), 200, null)
+                        : outcome.isConflict(operation.getId())
+                            ? new BatchResult(i, operation.getOp(), operation.getId(), 409, "Version mismatch")
+                            : new BatchResult(i, operation.getOp(), operation.getId(), 404, "Todo not found"));
+                    break;
+                default:
+                    results.add(outcome.isDeleted(deleted++)
+                        ? new BatchResult(i, operation.getOp(), operation.getId(), 200, null)
+                        : new BatchResult(i, operation.getOp(), operation.getId(), 404, "Todo not found"));
+            }
+        }
+        
+        if (!updates.isEmpty() || !deletes.isEmpty()) {
+            statistics.requestReconcile();
+        }
+        recordModification();
+        publishBatchEvents(results, creates);
+        return results;
+    }
+    
+    private void publishBatchEvents(List<BatchResult> results, List<Todo> creates) {
+        if (results.size() > MAX_BATCH_EVENTS) {
+            events.publish(TodoEvent.RESET, null, null);
+            return;
+        }
+        int created = 0;
+        for (BatchResult result : results) {
+            if (result.getStatus() >= 300) {
+                continue;
+            }
+            switch (result.getOp()) {
+                case BatchOperation.CREATE:
+                    events.publish(TodoEvent.CREATED, result.getId(), new Todo(creates.get(created++)));
+                    break;
+                case BatchOperation.UPDATE:
+                    events.publish(TodoEvent.UPDATED, result.getId(), null);
+                    break;
+                default:
+                    events.publish(TodoEvent.DELETED, result.getId(), null);
+            }
+        }
+    }
+    
+    // Payload format: origin|type|todoId, as written by the relay set up in enableEventRelay
+    private void onRemoteEvent(String payload) {
+        String[] parts = payload.split("\\|", -1);
+        if (parts.length != 3 || parts[0].equals(events.getInstanceTag())) {
+            return;
+        }
+        String type = parts[1];
+        Long todoId = parts[2].isEmpty() ? null : Long.valueOf(parts[2]);
+        
+        if (todoId == null) {
+            todoRepository.clearCached();
+        } else {
+            todoRepository.evictCached(todoId);
         }
+        // Listings changed without a local write; counters catch up at the next periodic reconcile
+        recordModification();
         
-        todoRepository.deleteById(id);
+        Todo todo = null;
+        if (todoId != null && !TodoEvent.DELETED.equals(type)) {
+            try {
+                todo = todoRepository.findById(todoId).orElse(null);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, "Could not load todo " + todoId + " for a remote event", e);
+            }
+        }
+        events.deliver(type, todoId, todo);
     }
     
     public TodoStats getStats() {
         try {
-            long total = todoRepository.count();
-            long completed = todoRepository.countByCompleted(true);
-            long pending = todoRepository.countByCompleted(false);
-            
-            return new TodoStats(total, completed, pending);
+            return statistics.snapshot();
         } catch (RuntimeException e) {
             if (e.getMessage() != null && e.getMessage().contains("Failed to setup database connection")) {
                 throw new RuntimeException("Database connection failed. Please check if PostgreSQL is running and properly configured.", e);
@@ -157,7 +404,38 @@ public class TodoService {
         }
     }
     
-    private void validateTodo(Todo todo) throws ValidationException {
+    /**
+     * Version of the todos table as seen through this service. It changes with
+     * every write, so equal values mean unchanged listings; writes made by other
+     * nodes or directly in the database are not observed.
+     */
+    public String getCollectionVersion() {
+        return instanceTag + "-" + modifications.get();
+    }
+    
+    /**
+     * Time of the last write made through this service, or of its creation.
+     * Writes made by other nodes or directly in the database do not move it,
+     * so it is not a valid {@code Last-Modified} for listings.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+    
+    private void recordModification() {
+        lastModified = System.currentTimeMillis();
+        modifications.incrementAndGet();
+    }
+    
+    public Optional<EntityCache.Stats> getCacheStats() {
+        return todoRepository.getCacheStats();
+    }
+    
+    public void resetCacheStats() {
+        todoRepository.resetCacheStats();
+    }
+    
+    public void validateTodo(Todo todo) throws ValidationException {
         if (todo == null) {
             throw new ValidationException("Todo cannot be null");
         }
@@ -183,6 +461,93 @@ public class TodoService {
         }
     }
     
+    // Returns null when a filter can never match, so the database is not queried at all
+    private TodoQuery normalize(TodoQuery query) throws ValidationException {
+        TodoQuery normalized = new TodoQuery()
+            .completed(query.getCompleted())
+            .sort(query.getSort())
+            .after(query.getAfter())
+            .limit(query.getLimit());
+        
+        if (query.getCategory() != null) {
+            if (query.getCategory().trim().isEmpty()) {
+                return null;
+            }
+            normalized.category(query.getCategory().trim());
+        }
+        if (query.getPriority() != null) {
+            if (!isValidPriority(query.getPriority())) {
+                return null;
+            }
+            normalized.priority(query.getPriority().toUpperCase());
+        }
+        if (query.getSearch() != null) {
+            if (query.getSearch().trim().isEmpty()) {
+                return null;
+            }
+            normalized.search(query.getSearch().trim());
+        }
+        if (normalized.getSort() == TodoQuery.Sort.RELEVANCE) {
+            if (normalized.getSearch() == null) {
+                throw new ValidationException("Relevance sort requires a search term");
+            }
+            if (normalized.getAfter() != null) {
+                throw new ValidationException("Relevance-ranked results cannot be paginated with a cursor");
+            }
+        }
+        if (normalized.getAfter() != null
+                && normalized.getSort() == TodoQuery.Sort.CREATED_AT_DESC
+                && normalized.getAfter().getCreatedAt() == null) {
+            throw new ValidationException("Invalid cursor for this listing");
+        }
+        return normalized;
+    }
+    
+    private RuntimeException databaseError(RuntimeException e, String operation) {
+        if (e.getMessage() != null && e.getMessage().contains("Failed to setup database connection")) {
+            return new RuntimeException("Database connection failed. Please check if PostgreSQL is running and properly configured.", e);
+        }
+        return new RuntimeException("Database error occurred while " + operation + ": " + e.getMessage(), e);
+    }
+    
+    private int validatePageSize(int limit) throws ValidationException {
+        if (limit <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Limit cannot exceed " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+    
+    // Rows are fetched with limit + 1 so the presence of a next page is known without a COUNT
+    private Page<Todo> toPage(List<Todo> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return new Page<>(rows, pageSize, null);
+        }
+        List<Todo> items = rows.subList(0, pageSize);
+        return new Page<>(items, pageSize, KeysetCursor.of(items.get(pageSize - 1)).encode());
+    }
+    
+    private void validateBatchId(Long id, Set<Long> seen) throws ValidationException {
+        if (id == null || id <= 0) {
+            throw new ValidationException("Invalid todo ID");
+        }
+        if (!seen.add(id)) {
+            throw new ValidationException("Todo " + id + " appears more than once in the batch");
+        }
+    }
+    
+    private Todo prepareForCreate(Todo todo, LocalDateTime now) {
+        if (todo.getCreatedAt() == null) {
+            todo.setCreatedAt(now);
+        }
+        if (todo.getPriority() == null || todo.getPriority().trim().isEmpty()) {
+            todo.setPriority("MEDIUM");
+        }
+        return todo;
+    }
+    
     private boolean isValidPriority(String priority) {
         if (priority == null) return false;
         String upperPriority = priority.toUpperCase();
@@ -0,0 +1,115 @@
+package com.example.todo.service;
+
+import com.example.todo.model.Todo;
+import com.example.todo.repository.TodoRepository;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-memory todo counters maintained by the write paths of {@link TodoService}.
+ *
+ * The counters are seeded with one aggregate query and periodically
+ * reconciled against the database, which corrects drift from writes made by
+ * other nodes or outside the application.
+ */
+public class TodoStatistics {
+    private static final Logger LOGGER = Logger.getLogger(TodoStatistics.class.getName());
+    private static final long RECONCILE_INTERVAL_SECONDS = 60;
+
+    private final TodoRepository todoRepository;
+    private final LongAdder total = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private volatile boolean seeded;
+    private ScheduledExecutorService scheduler;
+
+    public TodoStatistics(TodoRepository todoRepository) {
+        this.todoRepository = todoRepository;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "todo-stats-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::reconcileQuietly, 0, RECONCILE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public void onCreated(Todo todo) {
+        total.increment();
+        if (todo.isCompleted()) {
+            completed.increment();
+        }
+    }
+
+    public void onCompletedChanged(boolean nowCompleted) {
+        if (nowCompleted) {
+            completed.increment();
+        } else {
+            completed.decrement();
+        }
+    }
+
+    public void onDeleted(Todo todo) {
+        total.decrement();
+        if (todo.isCompleted()) {
+            completed.decrement();
+        }
+    }
+
+    // For writes whose effect on the counters is unknown, such as batch deletes
+    public synchronized void requestReconcile() {
+        if (scheduler != null) {
+            scheduler.execute(this::reconcileQuietly);
+        } else {
+            seeded = false;
+        }
+    }
+
+    public TodoService.TodoStats snapshot() {
+        if (!seeded) {
+            reconcile();
+        }
+        long totalCount = total.sum();
+        long completedCount = completed.sum();
+        return new TodoService.TodoStats(totalCount, completedCount, totalCount - completedCount);
+    }
+
+    /**
+     * Corrects the counters by what the query found against what they held
+     * when it started, so increments made while it runs are kept on top. A
+     * write that commits after the snapshot but before the query reads, and
+     * then increments, is counted twice until the next reconciliation.
+     */
+    public synchronized void reconcile() {
+        long totalBefore = total.sum();
+        long completedBefore = completed.sum();
+        TodoRepository.Counts counts = todoRepository.countTotalAndCompleted();
+        total.add(counts.getTotal() - totalBefore);
+        completed.add(counts.getCompleted() - completedBefore);
+        seeded = true;
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Todo statistics reconciliation failed", e);
+        }
+    }
+}
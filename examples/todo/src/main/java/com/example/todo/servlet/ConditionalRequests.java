@@ -0,0 +1,93 @@
+package com.example.todo.servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Conditional GET support: sets the validators of a representation and tells
+ * whether the client's copy is still current.
+ *
+ * As in RFC 9110, {@code If-None-Match} takes precedence and
+ * {@code If-Modified-Since} is only evaluated when it is absent.
+ */
+final class ConditionalRequests {
+    private ConditionalRequests() {}
+    
+    /**
+     * Sets {@code ETag}, {@code Last-Modified} (when {@code lastModified} is
+     * positive) and {@code Cache-Control: no-cache}. Answers 304 and returns
+     * true when the body does not need to be sent.
+     */
+    static boolean notModified(HttpServletRequest req, HttpServletResponse resp, String etag, long lastModified) {
+        resp.setHeader("ETag", etag);
+        resp.setHeader("Cache-Control", "no-cache");
+        if (lastModified > 0) {
+            resp.setDateHeader("Last-Modified", lastModified);
+        }
+        
+        boolean notModified;
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            notModified = matches(ifNoneMatch, etag);
+        } else {
+            long ifModifiedSince = ifModifiedSince(req);
+            // HTTP dates have one-second precision
+            notModified = ifModifiedSince >= 0 && lastModified > 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+        }
+        
+        if (notModified) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        }
+        return notModified;
+    }
+    
+    static String etag(String value) {
+        return "\"" + value + "\"";
+    }
+    
+    /** The first 64 bits of the SHA-256 of {@code value}, in hex, for ETags that vary by request. */
+    static String digest(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    // Weak comparison, as required for If-None-Match: a W/ prefix is ignored on both sides
+    private static boolean matches(String header, String etag) {
+        String expected = stripWeak(etag);
+        int start = 0;
+        while (start < header.length()) {
+            int end = header.indexOf(',', start);
+            if (end < 0) {
+                end = header.length();
+            }
+            String candidate = stripWeak(header.substring(start, end).trim());
+            if (candidate.equals("*") || candidate.equals(expected)) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+    
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+    
+    private static long ifModifiedSince(HttpServletRequest req) {
+        try {
+            return req.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            // Unparseable dates are ignored, as if the header were absent
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.todo.servlet;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Probes for load balancers and orchestrators.
+ *
+ * {@code /health/live} answers 200 as long as the webapp is deployed.
+ * {@code /health/ready} answers 200 only once {@link WarmupListener} has
+ * finished, and 503 while it is still warming up or cannot reach the
+ * database, so that no traffic is routed to a cold instance.
+ */
+@WebServlet(urlPatterns = "/health/*")
+public class HealthServlet extends HttpServlet {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) 
+            throws ServletException, IOException {
+        
+        String status;
+        if ("/live".equals(req.getPathInfo())) {
+            status = "up";
+        } else if ("/ready".equals(req.getPathInfo())) {
+            Object warmup = getServletContext().getAttribute(WarmupListener.STATUS_ATTRIBUTE);
+            status = warmup == null ? WarmupListener.STATUS_WARMING_UP : warmup.toString();
+        } else {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        boolean healthy = "up".equals(status) || WarmupListener.STATUS_READY.equals(status);
+        resp.setStatus(healthy ? HttpServletResponse.SC_OK : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        resp.setHeader("Cache-Control", "no-store");
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(resp.getWriter(), Map.of("status", status));
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.todo.servlet;
+
+import com.example.metrics.MetricsRegistry;
+import com.example.metrics.PrometheusWriter;
+import com.example.todo.repository.DatabaseManager;
+import com.example.todo.repository.StatementProfiler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves the metrics of {@link MetricsRegistry} in the Prometheus text format,
+ * and the slowest statements seen by {@link StatementProfiler} as JSON on
+ * {@code /metrics/statements}.
+ *
+ * Neither touches the database, so both keep answering while the pool is
+ * exhausted.
+ */
+@WebServlet(urlPatterns = {"/metrics", "/metrics/statements"}, loadOnStartup = 1)
+public class MetricsServlet extends HttpServlet {
+    private static final Logger LOGGER = Logger.getLogger(MetricsServlet.class.getName());
+    private static final int MAX_REPORT_SIZE = 500;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private StatementProfiler statementProfiler;
+    
+    // Looks up the DataSource at deploy time, so pool metrics exist before the first API request
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        try {
+            statementProfiler = DatabaseManager.getInstance().getStatementProfiler();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Connection pool metrics are unavailable", e);
+            return;
+        }
+        String threshold = getServletContext().getInitParameter("slowStatementMillis");
+        if (threshold != null) {
+            try {
+                statementProfiler.setSlowThresholdMillis(Long.parseLong(threshold.trim()));
+            } catch (NumberFormatException e) {
+                throw new ServletException("slowStatementMillis must be a number of milliseconds: " + threshold);
+            }
+        }
+        statementProfiler.setAnalyze(Boolean.parseBoolean(getServletContext().getInitParameter("explainAnalyze")));
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) 
+            throws ServletException, IOException {
+        
+        resp.setHeader("Cache-Control", "no-store");
+        if ("/metrics/statements".equals(req.getServletPath())) {
+            writeStatements(req, resp);
+            return;
+        }
+        resp.setContentType(PrometheusWriter.CONTENT_TYPE);
+        resp.getWriter().write(MetricsRegistry.getInstance().scrape());
+    }
+    
+    private void writeStatements(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (statementProfiler == null) {
+            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Database is not configured");
+            return;
+        }
+        int limit = StatementProfiler.DEFAULT_REPORT_SIZE;
+        String limitParam = req.getParameter("limit");
+        if (limitParam != null) {
+            try {
+                limit = Integer.parseInt(limitParam);
+            } catch (NumberFormatException e) {
+                limit = -1;
+            }
+            if (limit < 1 || limit > MAX_REPORT_SIZE) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "limit must be between 1 and " + MAX_REPORT_SIZE);
+                return;
+            }
+        }
+        
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("slowThresholdMillis", statementProfiler.getSlowThresholdMillis());
+        report.put("statements", statementProfiler.report(limit));
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(resp.getWriter(), report);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.todo.servlet;
+
+import com.example.metrics.MetricsRegistry;
+import com.example.metrics.PrometheusWriter;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs request handlers off the container threads, with a fixed number of
+ * requests admitted at a time.
+ *
+ * Admission never waits: when every permit is taken {@link #tryAdmit} fails
+ * immediately and the caller rejects the request. Handlers run on virtual
+ * threads when the JVM provides them (Java 21+), otherwise on platform
+ * threads, of which there are never more than admitted requests.
+ */
+public class RequestExecutor implements MetricsRegistry.Source {
+    private final int limit;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private final LongAdder rejected = new LongAdder();
+
+    public RequestExecutor(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Admission limit must be positive");
+        }
+        this.limit = limit;
+        this.permits = new Semaphore(limit);
+        this.executor = newExecutor();
+    }
+
+    public boolean tryAdmit() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /** Runs an admitted task and gives its permit back when the task ends. */
+    public void execute(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Gives back the permit of an admitted request that will not be executed. */
+    public void release() {
+        permits.release();
+    }
+
+    public int getLimit() { return limit; }
+
+    public int getActive() {
+        return limit - permits.availablePermits();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void writeTo(PrometheusWriter out) {
+        out.family("todo_requests_admission_limit", "gauge", "Requests that may run at the same time")
+           .sample("todo_requests_admission_limit", null, limit);
+        out.family("todo_requests_active", "gauge", "Admitted requests currently running")
+           .sample("todo_requests_active", null, getActive());
+        out.family("todo_requests_rejected_total", "counter", "Requests rejected with 503 because every permit was taken")
+           .sample("todo_requests_rejected_total", null, rejected.sum());
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService newExecutor() {
+        try {
+            // Looked up reflectively so the webapp still builds and runs on Java 17
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger threads = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "todo-request-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.todo.servlet;
+
+import com.example.metrics.LatencyFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.util.Arrays;
+
+/**
+ * Maps an HTTP method and a request path to a handler through a segment trie
+ * built once at startup.
+ *
+ * Patterns are made of literal segments and at most one numeric parameter
+ * written as {@code {id}}, e.g. {@code /{id}/toggle}. Matching walks the path
+ * in place: literal segments are compared with {@code regionMatches} and the
+ * parameter is parsed digit by digit, so routing a request allocates nothing.
+ * The matched template, prefixed with the servlet path given to the
+ * constructor, is stored in {@link LatencyFilter#ROUTE_ATTRIBUTE}.
+ */
+public class Router {
+    public enum Method { GET, POST, PUT, DELETE }
+
+    @FunctionalInterface
+    public interface Handler {
+        void handle(HttpServletRequest req, HttpServletResponse resp, long id) throws Exception;
+    }
+
+    public static final long NO_ID = -1;
+
+    // 18 digits always fit in a long, so parsing needs no overflow checks
+    private static final int MAX_ID_DIGITS = 18;
+    private static final String PARAMETER = "{id}";
+
+    private final String prefix;
+    private final Node root = new Node();
+
+    public Router() {
+        this("");
+    }
+
+    /** {@code prefix} is the servlet path, e.g. {@code /api/todos}, used to name routes in metrics. */
+    public Router(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public Router add(Method method, String pattern, Handler handler) {
+        Node node = root;
+        boolean hasParameter = false;
+        for (String segment : pattern.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (segment.equals(PARAMETER)) {
+                if (hasParameter) {
+                    throw new IllegalArgumentException("Only one " + PARAMETER + " parameter is supported: " + pattern);
+                }
+                hasParameter = true;
+                if (node.parameter == null) {
+                    node.parameter = new Node();
+                }
+                node = node.parameter;
+            } else {
+                node = node.literalChild(segment);
+            }
+        }
+        if (node.handlers[method.ordinal()] != null) {
+            throw new IllegalArgumentException("Duplicate route: " + method + " " + pattern);
+        }
+        node.handlers[method.ordinal()] = handler;
+        node.routes[method.ordinal()] = routeName(pattern);
+        return this;
+    }
+
+    /**
+     * Invokes the handler registered for the method and the request's path info,
+     * passing the {@code {id}} parameter or {@link #NO_ID}. Returns false when
+     * no route matches.
+     */
+    public boolean dispatch(Method method, HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        String path = req.getPathInfo();
+        int length = path == null ? 0 : path.length();
+        if (length > 0 && path.charAt(length - 1) == '/') {
+            length--;
+        }
+
+        Node node = root;
+        long id = NO_ID;
+        int position = 0;
+        while (position < length) {
+            if (path.charAt(position) != '/') {
+                return false;
+            }
+            int start = position + 1;
+            int end = path.indexOf('/', start);
+            if (end < 0 || end > length) {
+                end = length;
+            }
+
+            Node next = node.findLiteral(path, start, end);
+            if (next == null && node.parameter != null) {
+                id = parseId(path, start, end);
+                if (id != NO_ID) {
+                    next = node.parameter;
+                }
+            }
+            if (next == null) {
+                return false;
+            }
+            node = next;
+            position = end;
+        }
+
+        Handler handler = node.handlers[method.ordinal()];
+        if (handler == null) {
+            return false;
+        }
+        req.setAttribute(LatencyFilter.ROUTE_ATTRIBUTE, node.routes[method.ordinal()]);
+        handler.handle(req, resp, id);
+        return true;
+    }
+
+    private String routeName(String pattern) {
+        String path = pattern.endsWith("/") ? pattern.substring(0, pattern.length() - 1) : pattern;
+        if (!path.isEmpty() && !path.startsWith("/")) {
+            path = "/" + path;
+        }
+        String name = prefix + path;
+        return name.isEmpty() ? "/" : name;
+    }
+
+    private static long parseId(String path, int start, int end) {
+        if (start == end || end - start > MAX_ID_DIGITS) {
+            return NO_ID;
+        }
+        long id = 0;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return NO_ID;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+
+    private static final class Node {
+        private String[] names = new String[0];
+        private Node[] children = new Node[0];
+        private Node parameter;
+        private final Handler[] handlers = new Handler[Method.values().length];
+        private final String[] routes = new String[Method.values().length];
+
+        Node literalChild(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return children[i];
+                }
+            }
+            names = Arrays.copyOf(names, names.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            names[names.length - 1] = name;
+            children[children.length - 1] = new Node();
+            return children[children.length - 1];
+        }
+
+        Node findLiteral(String path, int start, int end) {
+            int length = end - start;
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i];
+                if (name.length() == length && path.regionMatches(start, name, 0, length)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+    }
+}
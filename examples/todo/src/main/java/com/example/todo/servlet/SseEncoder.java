@@ -0,0 +1,52 @@
+package com.example.todo.servlet;
+
+import com.example.todo.model.TodoEvent;
+import com.example.todo.service.TodoEventBroadcaster;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Encodes {@link TodoEvent}s as Server-Sent Events frames.
+ *
+ * Every subscriber receives the same bytes, so the frames of recent events
+ * are kept in a ring indexed by sequence and each event is serialized once
+ * however many clients are connected.
+ */
+class SseEncoder {
+    static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+    static final byte[] PREAMBLE = "retry: 3000\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper;
+    private final AtomicReferenceArray<Frame> frames = new AtomicReferenceArray<>(TodoEventBroadcaster.HISTORY_SIZE);
+
+    SseEncoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    byte[] encode(TodoEvent event) throws JsonProcessingException {
+        int slot = (int) (event.getSequence() % frames.length());
+        Frame frame = frames.get(slot);
+        if (frame != null && frame.event == event) {
+            return frame.bytes;
+        }
+        String data = "id: " + event.getId() + "\n"
+                    + "event: " + event.getType() + "\n"
+                    + "data: " + objectMapper.writeValueAsString(event) + "\n\n";
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        frames.set(slot, new Frame(event, bytes));
+        return bytes;
+    }
+
+    private static final class Frame {
+        private final TodoEvent event;
+        private final byte[] bytes;
+
+        Frame(TodoEvent event, byte[] bytes) {
+            this.event = event;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.todo.servlet;
+
+import com.example.todo.model.TodoEvent;
+import com.example.todo.service.TodoEventBroadcaster;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * One client of {@code GET /api/todos/events}, written with non-blocking I/O.
+ *
+ * Events wait in a bounded buffer and are written only while the output
+ * stream reports {@code isReady()}, so no thread ever blocks on a slow
+ * client. When the buffer fills up the broadcaster evicts the subscriber and
+ * the response is completed; the client reconnects with {@code Last-Event-ID}.
+ */
+final class SseSubscriber implements TodoEventBroadcaster.Subscriber, WriteListener, AsyncListener {
+    // Larger than the broadcaster history, so a full replay always fits
+    private static final int BUFFER_SIZE = 2 * TodoEventBroadcaster.HISTORY_SIZE;
+
+    private final AsyncContext async;
+    private final ServletOutputStream out;
+    private final TodoEventBroadcaster broadcaster;
+    private final SseEncoder encoder;
+    private final BlockingQueue<TodoEvent> pending = new ArrayBlockingQueue<>(BUFFER_SIZE);
+    private volatile boolean heartbeatDue;
+    private volatile boolean closed;
+    private boolean writable;
+    private boolean preambleSent;
+    private boolean unflushed;
+
+    private SseSubscriber(AsyncContext async, ServletOutputStream out,
+                          TodoEventBroadcaster broadcaster, SseEncoder encoder) {
+        this.async = async;
+        this.out = out;
+        this.broadcaster = broadcaster;
+        this.encoder = encoder;
+    }
+
+    static void open(HttpServletRequest req, HttpServletResponse resp,
+                     TodoEventBroadcaster broadcaster, SseEncoder encoder) throws IOException {
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        // Stops reverse proxies such as nginx from buffering the stream
+        resp.setHeader("X-Accel-Buffering", "no");
+
+        AsyncContext async = req.startAsync();
+        async.setTimeout(0);
+        SseSubscriber subscriber = new SseSubscriber(async, resp.getOutputStream(), broadcaster, encoder);
+        async.addListener(subscriber);
+        broadcaster.subscribe(subscriber, req.getHeader("Last-Event-ID"));
+        subscriber.out.setWriteListener(subscriber);
+    }
+
+    @Override
+    public boolean offer(TodoEvent event) {
+        return !closed && pending.offer(event);
+    }
+
+    @Override
+    public void heartbeat() {
+        heartbeatDue = true;
+    }
+
+    // Runs on the broadcaster thread and on container threads through onWritePossible
+    @Override
+    public synchronized void flush() {
+        if (!writable || closed) {
+            return;
+        }
+        try {
+            while (out.isReady()) {
+                if (!preambleSent) {
+                    out.write(SseEncoder.PREAMBLE);
+                    preambleSent = true;
+                    unflushed = true;
+                    continue;
+                }
+                TodoEvent event = pending.poll();
+                if (event != null) {
+                    out.write(encoder.encode(event));
+                    heartbeatDue = false;
+                    unflushed = true;
+                } else if (heartbeatDue) {
+                    out.write(SseEncoder.HEARTBEAT);
+                    heartbeatDue = false;
+                    unflushed = true;
+                } else if (unflushed) {
+                    out.flush();
+                    unflushed = false;
+                } else {
+                    return;
+                }
+            }
+            // Not ready: the container calls onWritePossible once the client catches up
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        broadcaster.unsubscribe(this);
+        try {
+            async.complete();
+        } catch (IllegalStateException e) {
+            // Already completed by the container
+        }
+    }
+
+    @Override
+    public void onWritePossible() {
+        synchronized (this) {
+            writable = true;
+        }
+        flush();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        close();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        closed = true;
+        broadcaster.unsubscribe(this);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+}
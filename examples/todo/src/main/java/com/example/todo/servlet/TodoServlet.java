@@ -1,140 +1,273 @@
 package com.example.todo.servlet;
 
+import com.example.metrics.MetricsRegistry;
+import com.example.todo.model.BatchOperation;
+import com.example.todo.model.BatchResult;
+import com.example.todo.model.Page;
 import com.example.todo.model.Todo;
+import com.example.todo.repository.DataSourceRegistry;
+import com.example.todo.repository.DatabaseManager;
+import com.example.todo.repository.EntityCache;
+import com.example.todo.repository.KeysetCursor;
+import com.example.todo.repository.ReadYourWrites;
+import com.example.todo.repository.TodoQuery;
+import com.example.todo.service.ConflictException;
 import com.example.todo.service.TodoService;
 import com.example.todo.service.ValidationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-@WebServlet("/api/todos/*")
+@WebServlet(urlPatterns = "/api/todos/*", asyncSupported = true, loadOnStartup = 1)
 public class TodoServlet extends HttpServlet {
-    private final TodoService todoService;
-    private final ObjectMapper objectMapper;
+    private static final Logger LOGGER = Logger.getLogger(TodoServlet.class.getName());
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final TypeReference<List<BatchOperation>> BATCH_TYPE = new TypeReference<>() {};
+    // Epoch millis of the client's last write; keeps its reads on the primary across nodes
+    private static final String LAST_WRITE_COOKIE = "todo_last_write";
     
+    private final Router router;
+    private TodoService todoService;
+    private ObjectMapper objectMapper;
+    private SseEncoder sseEncoder;
+    private RequestExecutor requestExecutor;
+    private DataSourceRegistry registry;
+    
+    // The container's constructor: the service and mapper are taken from WarmupListener in init()
     public TodoServlet() {
-        this.todoService = new TodoService();
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
+        this.router = buildRouter();
+    }
+    
+    public TodoServlet(TodoService todoService) {
+        this(todoService, createObjectMapper());
+    }
+    
+    public TodoServlet(TodoService todoService, ObjectMapper objectMapper) {
+        this();
+        this.todoService = todoService;
+        this.objectMapper = objectMapper;
+        this.sseEncoder = new SseEncoder(objectMapper);
+    }
+    
+    /** The mapper configuration used for every API response. */
+    public static ObjectMapper createObjectMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        return mapper;
     }
     
     @Override
-    protected void doGet(HttpServletRequest req, HttpServletResponse resp) 
+    public void init() throws ServletException {
+        super.init();
+        if (todoService == null) {
+            // Reuse the instances WarmupListener has already exercised, so their caches and serializers are warm
+            Object service = getServletContext().getAttribute(WarmupListener.TODO_SERVICE_ATTRIBUTE);
+            Object mapper = getServletContext().getAttribute(WarmupListener.OBJECT_MAPPER_ATTRIBUTE);
+            todoService = service instanceof TodoService ? (TodoService) service : new TodoService();
+            objectMapper = mapper instanceof ObjectMapper ? (ObjectMapper) mapper : createObjectMapper();
+            sseEncoder = new SseEncoder(objectMapper);
+            // Replicas come from JNDI, so only this setup can route reads
+            registry = DatabaseManager.getInstance().getRegistry();
+        }
+        String channel = getInitParameter("pgNotifyChannel");
+        if (channel != null) {
+            try {
+                todoService.enableEventRelay(channel);
+            } catch (IllegalArgumentException e) {
+                throw new ServletException(e.getMessage());
+            }
+        }
+        todoService.start();
+        configureReadYourWrites();
+        requestExecutor = new RequestExecutor(admissionLimit());
+        MetricsRegistry.getInstance().register(requestExecutor);
+    }
+    
+    @Override
+    public void destroy() {
+        if (requestExecutor != null) {
+            MetricsRegistry.getInstance().unregister(requestExecutor);
+            requestExecutor.shutdown();
+        }
+        todoService.shutdown();
+        super.destroy();
+    }
+    
+    // Database-bound requests run asynchronously, so a slow database ties up admitted requests instead of connector threads
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) 
             throws ServletException, IOException {
         
-        setCorsHeaders(resp);
-        resp.setContentType("application/json");
-        resp.setCharacterEncoding("UTF-8");
-        
-        String pathInfo = req.getPathInfo();
+        if (requestExecutor == null || !req.isAsyncSupported() || runsInline(req)) {
+            super.service(req, resp);
+            return;
+        }
+        if (!requestExecutor.tryAdmit()) {
+            rejectBusy(resp);
+            return;
+        }
         
+        AsyncContext async;
         try {
-            if (pathInfo == null || pathInfo.equals("/")) {
-                handleGetAll(req, resp);
-            } else if (pathInfo.equals("/stats")) {
-                handleGetStats(resp);
-            } else if (pathInfo.startsWith("/")) {
-                handleGetById(pathInfo.substring(1), resp);
-            }
+            async = req.startAsync();
         } catch (RuntimeException e) {
-            if (e.getMessage() != null && e.getMessage().contains("Database connection failed")) {
-                handleError(resp, 503, e.getMessage());
-            } else {
-                handleError(resp, 500, "Internal server error: " + e.getMessage());
-            }
-        } catch (Exception e) {
-            handleError(resp, 500, "Internal server error: " + e.getMessage());
+            requestExecutor.release();
+            throw e;
         }
+        // JDBC and pool timeouts bound each request; a container timeout would complete the response under the handler
+        async.setTimeout(0);
+        
+        requestExecutor.execute(() -> {
+            try {
+                super.service(req, resp);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Async request failed", e);
+                if (!resp.isCommitted()) {
+                    resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                }
+            } finally {
+                async.complete();
+            }
+        });
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) 
+            throws ServletException, IOException {
+        route(Router.Method.GET, req, resp);
     }
     
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) 
             throws ServletException, IOException {
-        
+        route(Router.Method.POST, req, resp);
+    }
+    
+    @Override
+    protected void doPut(HttpServletRequest req, HttpServletResponse resp) 
+            throws ServletException, IOException {
+        route(Router.Method.PUT, req, resp);
+    }
+    
+    @Override
+    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) 
+            throws ServletException, IOException {
+        route(Router.Method.DELETE, req, resp);
+    }
+    
+    @Override
+    protected void doOptions(HttpServletRequest req, HttpServletResponse resp) 
+            throws ServletException, IOException {
         setCorsHeaders(resp);
-        resp.setContentType("application/json");
-        resp.setCharacterEncoding("UTF-8");
-        
+        resp.setStatus(HttpServletResponse.SC_OK);
+    }
+    
+    // Statistics are served from memory and must stay available when the database is slow;
+    // the event stream is already non-blocking and stays open, so it must not hold an admission permit
+    private boolean runsInline(HttpServletRequest req) {
         String pathInfo = req.getPathInfo();
-        
+        return "OPTIONS".equals(req.getMethod())
+            || ("GET".equals(req.getMethod()) && ("/stats".equals(pathInfo) || "/stats/cache".equals(pathInfo)
+                                                  || "/events".equals(pathInfo)));
+    }
+    
+    // Defaults to the JNDI pool size, less the connection held by the notification listener,
+    // so admitted requests never wait for a connection
+    private int admissionLimit() throws ServletException {
+        String configured = getInitParameter("maxConcurrentRequests");
+        if (configured == null) {
+            int connections = DatabaseManager.getInstance().getMaxConnections();
+            return getInitParameter("pgNotifyChannel") == null ? connections : Math.max(1, connections - 1);
+        }
         try {
-            if (pathInfo == null || pathInfo.equals("/")) {
-                handleCreate(req, resp);
-            } else if (pathInfo.matches("/\\d+/toggle")) {
-                String idStr = pathInfo.split("/")[1];
-                handleToggle(idStr, resp);
-            }
-        } catch (ValidationException e) {
-            handleError(resp, 400, e.getMessage());
-        } catch (RuntimeException e) {
-            if (e.getMessage() != null && e.getMessage().contains("Database connection failed")) {
-                handleError(resp, 503, e.getMessage());
-            } else {
-                handleError(resp, 500, "Internal server error: " + e.getMessage());
+            return Integer.parseInt(configured);
+        } catch (NumberFormatException e) {
+            throw new ServletException("Invalid maxConcurrentRequests: " + configured);
+        }
+    }
+    
+    private void configureReadYourWrites() throws ServletException {
+        String configured = getInitParameter("readYourWritesMillis");
+        if (registry != null && configured != null) {
+            try {
+                registry.setReadYourWritesMillis(Long.parseLong(configured));
+            } catch (NumberFormatException e) {
+                throw new ServletException("Invalid readYourWritesMillis: " + configured);
             }
-        } catch (Exception e) {
-            handleError(resp, 500, "Internal server error: " + e.getMessage());
         }
     }
     
-    @Override
-    protected void doPut(HttpServletRequest req, HttpServletResponse resp) 
-            throws ServletException, IOException {
-        
+    private void rejectBusy(HttpServletResponse resp) throws IOException {
         setCorsHeaders(resp);
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
+        resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        resp.setHeader("Retry-After", RETRY_AFTER_SECONDS);
         
-        String pathInfo = req.getPathInfo();
-        
-        try {
-            if (pathInfo != null && pathInfo.matches("/\\d+")) {
-                String idStr = pathInfo.substring(1);
-                handleUpdate(idStr, req, resp);
-            } else {
-                handleError(resp, 400, "Invalid request path");
-            }
-        } catch (ValidationException e) {
-            handleError(resp, 400, e.getMessage());
-        } catch (RuntimeException e) {
-            if (e.getMessage() != null && e.getMessage().contains("Database connection failed")) {
-                handleError(resp, 503, e.getMessage());
-            } else {
-                handleError(resp, 500, "Internal server error: " + e.getMessage());
-            }
-        } catch (Exception e) {
-            handleError(resp, 500, "Internal server error: " + e.getMessage());
-        }
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", "Too many concurrent requests");
+        error.put("status", HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        error.put("type", "SERVER_BUSY");
+        objectMapper.writeValue(resp.getWriter(), error);
     }
     
-    @Override
-    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) 
-            throws ServletException, IOException {
+    private Router buildRouter() {
+        return new Router("/api/todos")
+            .add(Router.Method.GET, "/", (req, resp, id) -> handleGetAll(req, resp))
+            .add(Router.Method.GET, "/stats", (req, resp, id) -> handleGetStats(resp))
+            .add(Router.Method.GET, "/stats/cache", (req, resp, id) -> handleGetCacheStats(resp))
+            .add(Router.Method.GET, "/events", (req, resp, id) -> handleEvents(req, resp))
+            .add(Router.Method.GET, "/{id}", (req, resp, id) -> handleGetById(id, req, resp))
+            .add(Router.Method.POST, "/", (req, resp, id) -> handleCreate(req, resp))
+            .add(Router.Method.POST, "/batch", (req, resp, id) -> handleBatch(req, resp))
+            .add(Router.Method.POST, "/{id}/toggle", (req, resp, id) -> handleToggle(id, resp))
+            .add(Router.Method.PUT, "/{id}", (req, resp, id) -> handleUpdate(id, req, resp))
+            .add(Router.Method.DELETE, "/{id}", (req, resp, id) -> handleDelete(id, resp));
+    }
+    
+    private void route(Router.Method method, HttpServletRequest req, HttpServletResponse resp) 
+            throws IOException {
         
         setCorsHeaders(resp);
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
         
-        String pathInfo = req.getPathInfo();
-        
+        // Only worth a cookie when there are replicas to route reads to
+        boolean readYourWrites = registry != null && registry.getReplicaCount() > 0;
+        if (readYourWrites) {
+            ReadYourWrites.begin(lastWriteMillis(req));
+            if (method != Router.Method.GET) {
+                // Set before dispatch, while the response can still take headers
+                setLastWriteCookie(req, resp);
+            }
+        }
         try {
-            if (pathInfo != null && pathInfo.matches("/\\d+")) {
-                String idStr = pathInfo.substring(1);
-                handleDelete(idStr, resp);
-            } else {
+            if (!router.dispatch(method, req, resp)) {
                 handleError(resp, 400, "Invalid request path");
             }
+        } catch (ConflictException e) {
+            handleError(resp, 409, e.getMessage());
         } catch (ValidationException e) {
             handleError(resp, 400, e.getMessage());
         } catch (RuntimeException e) {
@@ -145,63 +278,206 @@ public class TodoServlet extends HttpServlet {
             }
         } catch (Exception e) {
             handleError(resp, 500, "Internal server error: " + e.getMessage());
+        } finally {
+            if (readYourWrites) {
+                ReadYourWrites.end();
+            }
         }
     }
     
-    @Override
-    protected void doOptions(HttpServletRequest req, HttpServletResponse resp) 
-            throws ServletException, IOException {
-        setCorsHeaders(resp);
-        resp.setStatus(HttpServletResponse.SC_OK);
+    private static long lastWriteMillis(HttpServletRequest req) {
+        Cookie[] cookies = req.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (LAST_WRITE_COOKIE.equals(cookie.getName())) {
+                    try {
+                        return Long.parseLong(cookie.getValue());
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+    
+    // Right after a change a replica may still return the previous listing, which must not get the new ETag
+    private boolean listingSettled() {
+        return registry == null || registry.getReplicaCount() == 0
+            || System.currentTimeMillis() - todoService.getLastModified() >= registry.getReadYourWritesMillis();
+    }
+    
+    private void setLastWriteCookie(HttpServletRequest req, HttpServletResponse resp) {
+        Cookie cookie = new Cookie(LAST_WRITE_COOKIE, Long.toString(System.currentTimeMillis()));
+        cookie.setMaxAge((int) Math.max(1, (registry.getReadYourWritesMillis() + 999) / 1000));
+        cookie.setPath(req.getContextPath().isEmpty() ? "/" : req.getContextPath());
+        cookie.setHttpOnly(true);
+        resp.addCookie(cookie);
     }
     
     private void handleGetAll(HttpServletRequest req, HttpServletResponse resp) 
-            throws IOException {
+            throws IOException, ValidationException {
         
         String completed = req.getParameter("completed");
-        String category = req.getParameter("category");
-        String priority = req.getParameter("priority");
-        String search = req.getParameter("search");
+        String after = req.getParameter("after");
+        String limitParam = req.getParameter("limit");
         
-        List<Todo> todos;
+        TodoQuery query = new TodoQuery()
+            .completed(completed == null ? null : Boolean.parseBoolean(completed))
+            .category(req.getParameter("category"))
+            .priority(req.getParameter("priority"))
+            .search(req.getParameter("search"))
+            .sort(parseSort(req.getParameter("sort")));
         
-        if (completed != null) {
-            todos = todoService.findByCompleted(Boolean.parseBoolean(completed));
-        } else if (category != null) {
-            todos = todoService.findByCategory(category);
-        } else if (priority != null) {
-            todos = todoService.findByPriority(priority);
-        } else if (search != null) {
-            todos = todoService.searchByTitle(search);
-        } else {
-            todos = todoService.findAll();
+        if (after != null) {
+            try {
+                query.after(KeysetCursor.decode(after));
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("Invalid cursor");
+            }
         }
         
-        objectMapper.writeValue(resp.getWriter(), todos);
+        boolean stream = "true".equals(req.getParameter("stream"));
+        boolean paged = !stream && (after != null || limitParam != null);
+        if (paged) {
+            query.limit(parseLimit(limitParam));
+        }
+        
+        // Listings only change through writes, so an unchanged modification counter needs no query.
+        // No Last-Modified: the time of the last local write says nothing about writes made elsewhere,
+        // while the ETag carries the instance tag and stops matching after a restart or on another node.
+        // The digest covers the normalized query and the body's shape, not the raw query string
+        String representation = (stream ? "stream;" : paged ? "page;" : "list;") + query.key();
+        String etag = ConditionalRequests.etag("todos-" + todoService.getCollectionVersion() + "-" +
+                                               ConditionalRequests.digest(representation));
+        if (listingSettled() && ConditionalRequests.notModified(req, resp, etag, -1)) {
+            return;
+        }
+        
+        if (stream) {
+            handleStream(query, resp);
+        } else if (paged) {
+            Page<Todo> page = todoService.find(query);
+            objectMapper.writeValue(resp.getWriter(), page);
+        } else {
+            List<Todo> todos = todoService.list(query);
+            objectMapper.writeValue(resp.getWriter(), todos);
+        }
     }
     
-    private void handleGetById(String idStr, HttpServletResponse resp) 
-            throws IOException {
+    // Writes rows as they arrive from the database instead of materializing the whole result
+    private void handleStream(TodoQuery query, HttpServletResponse resp) 
+            throws IOException, ValidationException {
         
+        JsonGenerator generator = objectMapper.createGenerator(resp.getWriter());
+        // Closing after a failure must not end the array, which would pass a truncated listing off as complete
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        boolean complete = false;
         try {
-            Long id = Long.parseLong(idStr);
-            Optional<Todo> todo = todoService.findById(id);
-            
-            if (todo.isPresent()) {
-                objectMapper.writeValue(resp.getWriter(), todo.get());
+            generator.writeStartArray();
+            todoService.stream(query, todo -> {
+                try {
+                    generator.writeObject(todo);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+            complete = true;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (complete) {
+                generator.close();
+            } else if (!resp.isCommitted()) {
+                // Nothing has reached the client yet, so the error response replaces the partial array
+                resp.resetBuffer();
             } else {
-                handleError(resp, 404, "Todo not found");
+                // Rows have been sent: the client sees the response end without the closing bracket
+                try {
+                    generator.close();
+                } catch (IOException e) {
+                    // The failure that ended the stream is the one to report
+                }
             }
+        }
+    }
+    
+    private TodoQuery.Sort parseSort(String sort) throws ValidationException {
+        if (sort == null) {
+            return null;
+        }
+        switch (sort) {
+            case "id":
+                return TodoQuery.Sort.ID_ASC;
+            case "createdAt":
+                return TodoQuery.Sort.CREATED_AT_DESC;
+            case "relevance":
+                return TodoQuery.Sort.RELEVANCE;
+            default:
+                throw new ValidationException("Sort must be id, createdAt or relevance");
+        }
+    }
+    
+    private int parseLimit(String limitParam) throws ValidationException {
+        if (limitParam == null) {
+            return TodoService.DEFAULT_PAGE_SIZE;
+        }
+        try {
+            return Integer.parseInt(limitParam);
         } catch (NumberFormatException e) {
-            handleError(resp, 400, "Invalid ID format");
+            throw new ValidationException("Invalid limit");
         }
     }
     
+    private void handleGetById(long id, HttpServletRequest req, HttpServletResponse resp) 
+            throws IOException {
+        
+        Optional<Todo> todo = todoService.findById(id);
+        
+        if (todo.isPresent()) {
+            if (ConditionalRequests.notModified(req, resp, etagOf(todo.get()), lastModifiedOf(todo.get()))) {
+                return;
+            }
+            objectMapper.writeValue(resp.getWriter(), todo.get());
+        } else {
+            handleError(resp, 404, "Todo not found");
+        }
+    }
+    
+    // Every write bumps version; rows without one fall back to their timestamps
+    private String etagOf(Todo todo) {
+        if (todo.getVersion() != null) {
+            return ConditionalRequests.etag(todo.getId() + "-" + todo.getVersion());
+        }
+        return ConditionalRequests.etag(todo.getId() + "-t" + lastModifiedOf(todo));
+    }
+    
+    private long lastModifiedOf(Todo todo) {
+        LocalDateTime modified = todo.getUpdatedAt() != null ? todo.getUpdatedAt() : todo.getCreatedAt();
+        return modified == null ? -1 : modified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
     private void handleGetStats(HttpServletResponse resp) throws IOException {
         TodoService.TodoStats stats = todoService.getStats();
         objectMapper.writeValue(resp.getWriter(), stats);
     }
     
+    private void handleGetCacheStats(HttpServletResponse resp) throws IOException {
+        Optional<EntityCache.Stats> stats = todoService.getCacheStats();
+        
+        if (stats.isPresent()) {
+            objectMapper.writeValue(resp.getWriter(), stats.get());
+        } else {
+            handleError(resp, 404, "Cache is disabled");
+        }
+    }
+    
+    // Server-Sent Events; the response stays open and is written by SseSubscriber
+    private void handleEvents(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        SseSubscriber.open(req, resp, todoService.getEvents(), sseEncoder);
+    }
+    
     private void handleCreate(HttpServletRequest req, HttpServletResponse resp) 
             throws IOException, ValidationException {
         
@@ -212,49 +488,53 @@ public class TodoServlet extends HttpServlet {
         objectMapper.writeValue(resp.getWriter(), created);
     }
     
-    private void handleUpdate(String idStr, HttpServletRequest req, HttpServletResponse resp) 
+    private void handleBatch(HttpServletRequest req, HttpServletResponse resp) 
             throws IOException, ValidationException {
         
+        List<BatchOperation> operations;
         try {
-            Long id = Long.parseLong(idStr);
-            Todo todo = objectMapper.readValue(req.getInputStream(), Todo.class);
-            Todo updated = todoService.update(id, todo);
-            
-            objectMapper.writeValue(resp.getWriter(), updated);
-        } catch (NumberFormatException e) {
-            handleError(resp, 400, "Invalid ID format");
+            operations = objectMapper.readValue(req.getInputStream(), BATCH_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new ValidationException("Invalid batch body: " + e.getOriginalMessage());
         }
+        List<BatchResult> results = todoService.executeBatch(operations);
+        
+        objectMapper.writeValue(resp.getWriter(), results);
     }
     
-    private void handleToggle(String idStr, HttpServletResponse resp) 
+    private void handleUpdate(long id, HttpServletRequest req, HttpServletResponse resp) 
             throws IOException, ValidationException {
         
-        try {
-            Long id = Long.parseLong(idStr);
-            Todo toggled = todoService.toggleCompleted(id);
-            
-            objectMapper.writeValue(resp.getWriter(), toggled);
-        } catch (NumberFormatException e) {
-            handleError(resp, 400, "Invalid ID format");
-        }
+        Todo todo = objectMapper.readValue(req.getInputStream(), Todo.class);
+        Todo updated = todoService.update(id, todo);
+        
+        objectMapper.writeValue(resp.getWriter(), updated);
     }
     
-    private void handleDelete(String idStr, HttpServletResponse resp) 
+    private void handleToggle(long id, HttpServletResponse resp) 
             throws IOException, ValidationException {
         
-        try {
-            Long id = Long.parseLong(idStr);
-            todoService.delete(id);
-            
-            resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
-        } catch (NumberFormatException e) {
-            handleError(resp, 400, "Invalid ID format");
-        }
+        Todo toggled = todoService.toggleCompleted(id);
+        
+        objectMapper.writeValue(resp.getWriter(), toggled);
+    }
+    
+    private void handleDelete(long id, HttpServletResponse resp) 
+            throws IOException, ValidationException {
+        
+        todoService.delete(id);
+        
+        resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
     }
     
     private void handleError(HttpServletResponse resp, int status, String message) 
             throws IOException {
         
+        if (resp.isCommitted()) {
+            // Part of the body has been sent, typically a streamed listing; neither the status nor the body can change
+            LOGGER.warning("Response already committed, dropping error " + status + ": " + message);
+            return;
+        }
         resp.setStatus(status);
         Map<String, Object> error = new HashMap<>();
         error.put("error", message);
@@ -268,6 +548,8 @@ public class TodoServlet extends HttpServlet {
             error.put("type", "VALIDATION_ERROR");
         } else if (status == 404) {
             error.put("type", "NOT_FOUND");
+        } else if (status == 409) {
+            error.put("type", "CONFLICT");
         } else if (status == 500) {
             error.put("type", "INTERNAL_SERVER_ERROR");
         }
@@ -278,6 +560,7 @@ public class TodoServlet extends HttpServlet {
     private void setCorsHeaders(HttpServletResponse resp) {
         resp.setHeader("Access-Control-Allow-Origin", "*");
         resp.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        resp.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        resp.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, If-None-Match, If-Modified-Since, Last-Event-ID");
+        resp.setHeader("Access-Control-Expose-Headers", "ETag, Last-Modified, Retry-After");
     }
 }
\ No newline at end of file
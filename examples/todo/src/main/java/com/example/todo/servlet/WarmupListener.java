@@ -0,0 +1,212 @@
+package com.example.todo.servlet;
+
+import com.example.todo.model.Page;
+import com.example.todo.model.Todo;
+import com.example.todo.repository.DatabaseManager;
+import com.example.todo.repository.TodoQuery;
+import com.example.todo.service.TodoService;
+import com.example.todo.service.ValidationException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Warms the application up right after deploy, so that the first real
+ * requests do not pay for JNDI lookup, pool creation, Jackson serializer
+ * construction and interpreted code.
+ *
+ * The database layer, the {@link TodoService} and the {@link ObjectMapper}
+ * are created in {@code contextInitialized}; {@link TodoServlet} picks them up
+ * from the context attributes. A background thread then opens the pool's
+ * idle connections and repeats a set of read-only calls through the service
+ * and the mapper. {@code /health/ready} answers 503 until that has finished,
+ * and the thread retries every few seconds while the database is unreachable.
+ * Any other error is not retried and leaves the status at {@code failed}.
+ * Once done, the entity cache counters are reset so that {@code findById}
+ * warm-up calls do not show up as cache hits.
+ *
+ * Context parameters: {@code warmupCalls} (comma separated, from
+ * {@code page, findById, findAll, stats, parse}), {@code warmupIterations}
+ * (0 skips the synthetic calls) and {@code warmupMaxSeconds}.
+ */
+@WebListener
+public class WarmupListener implements ServletContextListener {
+    public static final String TODO_SERVICE_ATTRIBUTE = TodoService.class.getName();
+    public static final String OBJECT_MAPPER_ATTRIBUTE = WarmupListener.class.getName() + ".objectMapper";
+    public static final String STATUS_ATTRIBUTE = WarmupListener.class.getName() + ".status";
+
+    public static final String STATUS_WARMING_UP = "warming-up";
+    public static final String STATUS_READY = "ready";
+    public static final String STATUS_FAILED = "failed";
+
+    private static final Logger LOGGER = Logger.getLogger(WarmupListener.class.getName());
+    private static final List<String> CALLS = List.of("page", "findById", "findAll", "stats", "parse");
+    private static final String DEFAULT_CALLS = "page,findById,stats,parse";
+    private static final int DEFAULT_ITERATIONS = 200;
+    private static final int DEFAULT_MAX_SECONDS = 30;
+    private static final long RETRY_MILLIS = 5000;
+    private static final String SAMPLE_TODO =
+        "{\"title\":\"Warm-up\",\"description\":\"Not stored\",\"completed\":false,\"priority\":\"MEDIUM\",\"category\":\"work\"}";
+
+    private Thread thread;
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        ServletContext context = sce.getServletContext();
+        context.setAttribute(STATUS_ATTRIBUTE, STATUS_WARMING_UP);
+
+        ObjectMapper objectMapper = TodoServlet.createObjectMapper();
+        context.setAttribute(OBJECT_MAPPER_ATTRIBUTE, objectMapper);
+        TodoService todoService;
+        try {
+            // JNDI lookup and JDBI setup only; no connection is opened yet
+            todoService = new TodoService();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Database layer could not be initialized; the application stays unready", e);
+            context.setAttribute(STATUS_ATTRIBUTE, STATUS_FAILED);
+            return;
+        }
+        context.setAttribute(TODO_SERVICE_ATTRIBUTE, todoService);
+
+        List<String> calls;
+        int iterations;
+        long maxNanos;
+        try {
+            calls = parseCalls(parameter(context, "warmupCalls", DEFAULT_CALLS));
+            iterations = Integer.parseInt(parameter(context, "warmupIterations", Integer.toString(DEFAULT_ITERATIONS)));
+            maxNanos = TimeUnit.SECONDS.toNanos(Integer.parseInt(parameter(context, "warmupMaxSeconds",
+                                                                           Integer.toString(DEFAULT_MAX_SECONDS))));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid warm-up configuration: " + e.getMessage(), e);
+        }
+
+        // Started from here, the thread inherits the webapp class loader and with it the JNDI context
+        thread = new Thread(() -> run(context, todoService, objectMapper, calls, iterations, maxNanos), "todo-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private static void run(ServletContext context, TodoService todoService, ObjectMapper objectMapper,
+                            List<String> calls, int iterations, long maxNanos) {
+        for (int attempt = 1; !Thread.currentThread().isInterrupted(); attempt++) {
+            long start = System.nanoTime();
+            try {
+                int connections = DatabaseManager.getInstance().primePool();
+                int completed = warmUp(todoService, objectMapper, calls, iterations, start + maxNanos);
+                // The cache stays warm, but its hit ratio should only reflect real traffic
+                todoService.resetCacheStats();
+                context.setAttribute(STATUS_ATTRIBUTE, STATUS_READY);
+                LOGGER.info(String.format("Warm-up finished in %d ms: %d pooled connections, %d x %s",
+                                          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                                          connections, completed, calls));
+                return;
+            } catch (SQLException | ValidationException | IOException | RuntimeException e) {
+                if (!causedBySql(e)) {
+                    // Not the database: the next attempt would fail the same way
+                    LOGGER.log(Level.SEVERE, "Warm-up failed; the application stays unready", e);
+                    context.setAttribute(STATUS_ATTRIBUTE, STATUS_FAILED);
+                    return;
+                }
+                // Still warming up while the database is unreachable. Warn once; a database that
+                // stays down would otherwise flood the log
+                LOGGER.log(attempt == 1 ? Level.WARNING : Level.FINE, "Warm-up failed, retrying in " + RETRY_MILLIS + " ms", e);
+            }
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // JDBI wraps the driver's SQLException in its own runtime exceptions
+    private static boolean causedBySql(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Read-only calls only: warm-up must never change data. Returns the number of completed iterations.
+    private static int warmUp(TodoService todoService, ObjectMapper objectMapper, List<String> calls,
+                              int iterations, long deadline) throws ValidationException, IOException {
+        TodoQuery firstPage = new TodoQuery().limit(TodoService.DEFAULT_PAGE_SIZE);
+        Optional<Long> sampleId = todoService.find(firstPage).getItems().stream().findFirst().map(Todo::getId);
+
+        for (int i = 0; i < iterations; i++) {
+            if (System.nanoTime() > deadline || Thread.currentThread().isInterrupted()) {
+                return i;
+            }
+            for (String call : calls) {
+                switch (call) {
+                    case "page":
+                        Page<Todo> page = todoService.find(firstPage);
+                        serialize(objectMapper, page);
+                        break;
+                    case "findById":
+                        if (sampleId.isPresent()) {
+                            serialize(objectMapper, todoService.findById(sampleId.get()).orElse(null));
+                        }
+                        break;
+                    case "findAll":
+                        serialize(objectMapper, todoService.findAll());
+                        break;
+                    case "stats":
+                        serialize(objectMapper, todoService.getStats());
+                        break;
+                    case "parse":
+                        todoService.validateTodo(objectMapper.readValue(SAMPLE_TODO, Todo.class));
+                        break;
+                }
+            }
+        }
+        return iterations;
+    }
+
+    // Same path as the servlet's responses; writeValue closes its target, hence a new writer every time
+    private static void serialize(ObjectMapper objectMapper, Object value) throws IOException {
+        objectMapper.writeValue(Writer.nullWriter(), value);
+    }
+
+    private static List<String> parseCalls(String value) {
+        List<String> calls = new ArrayList<>();
+        for (String call : value.split(",")) {
+            String name = call.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!CALLS.contains(name)) {
+                throw new IllegalArgumentException("unknown warm-up call '" + name + "'");
+            }
+            calls.add(name);
+        }
+        return calls;
+    }
+
+    private static String parameter(ServletContext context, String name, String defaultValue) {
+        String value = context.getInitParameter(name);
+        return value == null ? defaultValue : value.trim();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.todo.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityCacheTest {
+    private final EntityCache<Long, String> cache = new EntityCache<>(100, Duration.ofMinutes(1));
+
+    @Test
+    void returnsWhatWasPutWithAFreshStamp() {
+        cache.putIfFresh(1L, "one", cache.stamp());
+        assertEquals("one", cache.get(1L));
+        assertNull(cache.get(2L));
+
+        EntityCache.Stats stats = cache.stats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    void discardsALoadThatOverlappedAnInvalidation() {
+        long stamp = cache.stamp();
+        // Another request writes the row while this one is still reading the old version
+        cache.invalidate(1L);
+        cache.putIfFresh(1L, "stale", stamp);
+        assertNull(cache.get(1L));
+
+        cache.putIfFresh(1L, "fresh", cache.stamp());
+        assertEquals("fresh", cache.get(1L));
+    }
+
+    @Test
+    void anyInvalidationMakesOlderStampsStale() {
+        long stamp = cache.stamp();
+        cache.invalidate(99L);
+        cache.putIfFresh(1L, "one", stamp);
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void clearDropsEntriesAndOutstandingLoads() {
+        cache.putIfFresh(1L, "one", cache.stamp());
+        long stamp = cache.stamp();
+        cache.clear();
+        cache.putIfFresh(2L, "two", stamp);
+        assertNull(cache.get(1L));
+        assertNull(cache.get(2L));
+        assertEquals(0, cache.stats().getSize());
+    }
+
+    @Test
+    void expiresEntriesAfterTheTtl() throws InterruptedException {
+        EntityCache<Long, String> shortLived = new EntityCache<>(10, Duration.ofMillis(1));
+        shortLived.putIfFresh(1L, "one", shortLived.stamp());
+        Thread.sleep(5);
+        assertNull(shortLived.get(1L));
+    }
+
+    @Test
+    void staysWithinItsSizeAndKeepsFrequentlyReadEntries() {
+        EntityCache<Long, String> small = new EntityCache<>(10, Duration.ofMinutes(1));
+        small.putIfFresh(0L, "hot", small.stamp());
+        for (long id = 1; id <= 100; id++) {
+            small.get(0L);
+            small.putIfFresh(id, "cold" + id, small.stamp());
+        }
+        assertTrue(small.stats().getSize() <= 10);
+        assertTrue(small.stats().getEvictions() >= 90);
+        assertEquals("hot", small.get(0L));
+    }
+
+    @Test
+    void resetStatsKeepsTheEntries() {
+        cache.putIfFresh(1L, "one", cache.stamp());
+        cache.get(1L);
+        cache.get(2L);
+
+        cache.resetStats();
+        EntityCache.Stats stats = cache.stats();
+        assertEquals(0, stats.getHits());
+        assertEquals(0, stats.getMisses());
+        assertEquals(1, stats.getSize());
+        assertEquals("one", cache.get(1L));
+    }
+
+    @Test
+    void rejectsANonPositiveSize() {
+        assertThrows(IllegalArgumentException.class, () -> new EntityCache<Long, String>(0, Duration.ofMinutes(1)));
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.todo.repository;
+
+import com.example.metrics.PrometheusWriter;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class InstrumentedDataSourceTest {
+    private final DataSource delegate = mock(DataSource.class);
+
+    @Test
+    void tracksCheckoutsAndReleasesEachConnectionOnce() throws SQLException {
+        Connection pooled = mock(Connection.class);
+        when(delegate.getConnection()).thenReturn(pooled);
+        InstrumentedDataSource dataSource = new InstrumentedDataSource(delegate, 10);
+
+        Connection first = dataSource.getConnection();
+        dataSource.getConnection();
+        first.close();
+        first.close();
+
+        String metrics = scrape(dataSource);
+        assertTrue(metrics.contains("todo_db_pool_max_connections 10\n"));
+        assertTrue(metrics.contains("todo_db_pool_checkouts_total 2\n"));
+        assertTrue(metrics.contains("todo_db_pool_active_connections 1\n"));
+        // Closing twice still reaches the pool, which decides what a second close means
+        verify(pooled, times(2)).close();
+    }
+
+    @Test
+    void tellsTimeoutsFromOtherFailures() throws SQLException {
+        when(delegate.getConnection())
+            .thenThrow(new SQLException("Cannot get a connection", new NoSuchElementException("Timeout waiting for idle object")))
+            .thenThrow(new SQLException("Connection refused"));
+        InstrumentedDataSource dataSource = new InstrumentedDataSource(delegate, 10);
+
+        assertThrows(SQLException.class, dataSource::getConnection);
+        assertThrows(SQLException.class, dataSource::getConnection);
+
+        String metrics = scrape(dataSource);
+        assertTrue(metrics.contains("todo_db_pool_timeouts_total 1\n"));
+        assertTrue(metrics.contains("todo_db_pool_checkout_failures_total 1\n"));
+        assertTrue(metrics.contains("todo_db_pool_checkouts_total 0\n"));
+        assertTrue(metrics.contains("todo_db_pool_waiting_threads 0\n"));
+    }
+
+    @Test
+    void attributesLongHoldsToTheApplicationCaller() throws SQLException {
+        when(delegate.getConnection()).thenReturn(mock(Connection.class));
+        InstrumentedDataSource dataSource = new InstrumentedDataSource(delegate, 10, 0);
+
+        dataSource.getConnection().close();
+        dataSource.getConnection();
+
+        // Scraped from the holding thread itself, so the open connection resolves to this method too
+        PrometheusWriter out = new PrometheusWriter();
+        dataSource.writeTo(out);
+        String metrics = out.toString();
+        String caller = "caller=\"InstrumentedDataSourceTest.attributesLongHoldsToTheApplicationCaller\"";
+        assertTrue(metrics.contains("todo_db_pool_long_holds_total{" + caller + "} 1\n"));
+        assertTrue(metrics.contains("todo_db_pool_leak_suspects{" + caller + "} 1\n"));
+    }
+
+    @Test
+    void writesEachFamilyOnceWithASamplePerPool() {
+        InstrumentedDataSource primary = new InstrumentedDataSource(delegate, 10, 1000, "primary");
+        InstrumentedDataSource replica = new InstrumentedDataSource(delegate, 4, 1000, "replica");
+
+        PrometheusWriter out = new PrometheusWriter();
+        InstrumentedDataSource.writeTo(out, List.of(primary, replica));
+        String metrics = out.toString();
+
+        assertEquals(metrics.indexOf("# TYPE todo_db_pool_max_connections"),
+                     metrics.lastIndexOf("# TYPE todo_db_pool_max_connections"));
+        assertTrue(metrics.contains("todo_db_pool_max_connections{pool=\"primary\"} 10\n"));
+        assertTrue(metrics.contains("todo_db_pool_max_connections{pool=\"replica\"} 4\n"));
+        // A mocked DataSource has no getNumIdle, so the idle gauge is left out
+        assertFalse(metrics.contains("todo_db_pool_idle_connections"));
+    }
+
+    private static String scrape(InstrumentedDataSource dataSource) {
+        PrometheusWriter out = new PrometheusWriter();
+        dataSource.writeTo(out);
+        return out.toString();
+    }
+}
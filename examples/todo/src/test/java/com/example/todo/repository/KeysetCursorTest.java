@@ -0,0 +1,50 @@
+package com.example.todo.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetCursorTest {
+
+    @Test
+    void roundTripsIdAndCreatedAt() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 3, 1, 12, 30, 45, 123_456_000);
+        KeysetCursor cursor = KeysetCursor.decode(new KeysetCursor(42, createdAt).encode());
+        assertEquals(42, cursor.getId());
+        assertEquals(createdAt, cursor.getCreatedAt());
+    }
+
+    @Test
+    void roundTripsAnIdOnlyCursor() {
+        KeysetCursor cursor = KeysetCursor.decode(new KeysetCursor(7, null).encode());
+        assertEquals(7, cursor.getId());
+        assertNull(cursor.getCreatedAt());
+    }
+
+    @Test
+    void encodesUrlSafeTokensWithoutPadding() {
+        for (long id = 0; id < 300; id++) {
+            String token = new KeysetCursor(id, LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(id * 7919)).encode();
+            assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+        }
+    }
+
+    @Test
+    void rejectsEmptyTokens() {
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(null));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(""));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(encode("abc")));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(encode("42|yesterday")));
+    }
+
+    private static String encode(String raw) {
+        return java.util.Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes());
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.todo.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TodoQueryTest {
+
+    @Test
+    void keysTheEffectiveSortRatherThanTheRequestedOne() {
+        assertEquals(new TodoQuery().key(), new TodoQuery().sort(TodoQuery.Sort.ID_ASC).key());
+        assertEquals(new TodoQuery().search("milk").key(),
+                     new TodoQuery().search("milk").sort(TodoQuery.Sort.RELEVANCE).key());
+        assertNotEquals(new TodoQuery().key(), new TodoQuery().sort(TodoQuery.Sort.CREATED_AT_DESC).key());
+    }
+
+    @Test
+    void keysEveryPartOfTheSpecification() {
+        TodoQuery base = new TodoQuery().completed(true).category("work").priority("high").search("report");
+        String key = base.key();
+
+        assertNotEquals(key, new TodoQuery().completed(false).category("work").priority("high").search("report").key());
+        assertNotEquals(key, new TodoQuery().completed(true).category("home").priority("high").search("report").key());
+        assertNotEquals(key, new TodoQuery().completed(true).category("work").priority("low").search("report").key());
+        assertNotEquals(key, new TodoQuery().completed(true).category("work").priority("high").search("memo").key());
+        assertNotEquals(key, base.limit(10).key());
+        assertNotEquals(new TodoQuery().key(),
+                        new TodoQuery().after(new KeysetCursor(5, LocalDateTime.of(2024, 1, 1, 0, 0))).key());
+    }
+
+    @Test
+    void doesNotLetOneValueSpillIntoTheNextField() {
+        assertNotEquals(new TodoQuery().category("a;priority=1:b").key(),
+                        new TodoQuery().category("a").priority("b").key());
+    }
+
+    @Test
+    void groupsQueriesWithTheSameFiltersIntoOneShape() {
+        assertEquals(new TodoQuery().category("work").limit(20).shape(),
+                     new TodoQuery().category("home").limit(50).shape());
+        assertNotEquals(new TodoQuery().category("work").shape(), new TodoQuery().priority("work").shape());
+        assertTrue(new TodoQuery().search("x").after(new KeysetCursor(1, LocalDateTime.now())).limit(5).shape()
+                   < TodoQuery.SHAPES);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.todo.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TodoRepositoryTest {
+    private static final KeysetCursor CURSOR = new KeysetCursor(5, LocalDateTime.of(2024, 1, 1, 0, 0));
+
+    @Test
+    void rendersAnUnfilteredListingInIdOrder() {
+        assertEquals("SELECT " + TodoRepository.COLUMNS + " FROM todos ORDER BY id",
+                     sql(new TodoQuery()));
+        assertEquals("SELECT " + TodoRepository.COLUMNS + " FROM todos WHERE id > :afterId ORDER BY id LIMIT :limit",
+                     sql(new TodoQuery().after(CURSOR).limit(20)));
+    }
+
+    @Test
+    void joinsEveryFilterWithAnd() {
+        assertEquals("SELECT " + TodoRepository.COLUMNS + " FROM todos"
+                     + " WHERE completed = :completed AND category = :category AND priority = :priority"
+                     + " ORDER BY created_at DESC, id DESC",
+                     sql(new TodoQuery().completed(false).category("work").priority("HIGH")));
+    }
+
+    @Test
+    void pagesFilteredListingsOnCreatedAtAndId() {
+        assertEquals("SELECT " + TodoRepository.COLUMNS + " FROM todos"
+                     + " WHERE category = :category AND (created_at, id) < (:afterCreatedAt, :afterId)"
+                     + " ORDER BY created_at DESC, id DESC LIMIT :limit",
+                     sql(new TodoQuery().category("work").after(CURSOR).limit(20)));
+    }
+
+    @Test
+    void ranksSearchesByRelevanceUnlessASortIsGiven() {
+        assertEquals("SELECT " + TodoRepository.COLUMNS + " FROM todos"
+                     + " WHERE search_vector @@ to_tsquery('simple', :search)"
+                     + " ORDER BY ts_rank(search_vector, to_tsquery('simple', :search)) DESC, id DESC",
+                     sql(new TodoQuery().search("milk")));
+        assertTrue(sql(new TodoQuery().search("milk").sort(TodoQuery.Sort.ID_ASC)).endsWith(" ORDER BY id"));
+    }
+
+    @Test
+    void reusesTheRenderedStatementOfAShape() {
+        assertSame(sql(new TodoQuery().category("work")), sql(new TodoQuery().category("home")));
+    }
+
+    @Test
+    void turnsASearchIntoPrefixTerms() {
+        assertEquals("buy:* & milk:*", TodoRepository.toPrefixTsQuery("Buy milk!"));
+        assertEquals("a:* & b:* & c:* & d:* & e:* & f:* & g:* & h:*",
+                     TodoRepository.toPrefixTsQuery("a b c d e f g h i j"));
+        assertNull(TodoRepository.toPrefixTsQuery("!?"));
+    }
+
+    private static String sql(TodoQuery query) {
+        return TodoRepository.sqlFor(query.shape());
+    }
+}
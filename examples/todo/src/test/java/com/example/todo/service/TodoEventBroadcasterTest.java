@@ -0,0 +1,111 @@
+package com.example.todo.service;
+
+import com.example.todo.model.TodoEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TodoEventBroadcasterTest {
+    // Not started: without a dispatcher nothing is flushed, so the buffers only fill up
+    private final TodoEventBroadcaster broadcaster = new TodoEventBroadcaster();
+
+    @Test
+    void evictsOnlyTheSubscriberWhoseBufferIsFull() {
+        BufferedSubscriber slow = new BufferedSubscriber(2);
+        BufferedSubscriber fast = new BufferedSubscriber(10);
+        broadcaster.subscribe(slow, null);
+        broadcaster.subscribe(fast, null);
+
+        broadcaster.deliver(TodoEvent.CREATED, 1L, null);
+        broadcaster.deliver(TodoEvent.CREATED, 2L, null);
+        assertFalse(slow.closed);
+
+        broadcaster.deliver(TodoEvent.CREATED, 3L, null);
+        assertTrue(slow.closed);
+        assertFalse(fast.closed);
+        assertEquals(1, broadcaster.getSubscriberCount());
+        assertEquals(3, fast.events.size());
+
+        // An evicted subscriber gets nothing more
+        broadcaster.deliver(TodoEvent.CREATED, 4L, null);
+        assertEquals(2, slow.events.size());
+    }
+
+    @Test
+    void replaysWhatWasMissedAfterLastEventId() {
+        TodoEvent first = broadcaster.deliver(TodoEvent.CREATED, 1L, null);
+        broadcaster.deliver(TodoEvent.UPDATED, 1L, null);
+        broadcaster.deliver(TodoEvent.DELETED, 1L, null);
+
+        BufferedSubscriber subscriber = new BufferedSubscriber(10);
+        broadcaster.subscribe(subscriber, first.getId());
+
+        assertEquals(List.of(TodoEvent.UPDATED, TodoEvent.DELETED), types(subscriber));
+    }
+
+    @Test
+    void resetsAClientWithAnIdFromAnotherInstance() {
+        broadcaster.deliver(TodoEvent.CREATED, 1L, null);
+        String foreignId = new TodoEventBroadcaster().deliver(TodoEvent.CREATED, 1L, null).getId();
+
+        BufferedSubscriber subscriber = new BufferedSubscriber(10);
+        broadcaster.subscribe(subscriber, foreignId);
+
+        assertEquals(List.of(TodoEvent.RESET), types(subscriber));
+    }
+
+    @Test
+    void resetsAClientThatFellOutOfTheHistory() {
+        TodoEvent first = broadcaster.deliver(TodoEvent.CREATED, 1L, null);
+        // The events after the first one fill the whole history and one more overwrites its successor
+        for (int i = 0; i <= TodoEventBroadcaster.HISTORY_SIZE; i++) {
+            broadcaster.deliver(TodoEvent.UPDATED, 1L, null);
+        }
+
+        BufferedSubscriber subscriber = new BufferedSubscriber(10);
+        broadcaster.subscribe(subscriber, first.getId());
+
+        assertEquals(List.of(TodoEvent.RESET), types(subscriber));
+    }
+
+    private static List<String> types(BufferedSubscriber subscriber) {
+        List<String> types = new ArrayList<>();
+        subscriber.events.forEach(event -> types.add(event.getType()));
+        return types;
+    }
+
+    private static class BufferedSubscriber implements TodoEventBroadcaster.Subscriber {
+        private final int capacity;
+        private final List<TodoEvent> events = new ArrayList<>();
+        private boolean closed;
+
+        BufferedSubscriber(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public boolean offer(TodoEvent event) {
+            if (events.size() == capacity) {
+                return false;
+            }
+            events.add(event);
+            return true;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.todo.service;
+
+import com.example.todo.model.BatchOperation;
+import com.example.todo.model.BatchResult;
+import com.example.todo.model.Todo;
+import com.example.todo.repository.TodoRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TodoServiceTest {
+    private final TodoRepository repository = mock(TodoRepository.class);
+    private final TodoService service = new TodoService(repository);
+
+    @Test
+    void rejectsABatchThatNamesAnIdTwice() {
+        List<BatchOperation> operations = List.of(
+            new BatchOperation(BatchOperation.DELETE, 5L, null),
+            new BatchOperation(BatchOperation.UPDATE, 5L, todo("Renamed")));
+
+        ValidationException e = assertThrows(ValidationException.class, () -> service.executeBatch(operations));
+        assertEquals("Operation #1: Todo 5 appears more than once in the batch", e.getMessage());
+        verify(repository, never()).executeBatch(any(), any(), any(), any());
+    }
+
+    @Test
+    void reportsAMixedBatchInRequestOrder() throws ValidationException {
+        when(repository.executeBatch(any(), any(), any(), any())).thenReturn(
+            new TodoRepository.BatchOutcome(new long[] {42}, new int[] {0}, new int[] {1}, Set.of(7L)));
+        List<BatchOperation> operations = List.of(
+            new BatchOperation(BatchOperation.DELETE, 5L, null),
+            new BatchOperation(BatchOperation.UPDATE, 7L, todo("Renamed")),
+            new BatchOperation(BatchOperation.CREATE, null, todo("New")));
+
+        List<BatchResult> results = service.executeBatch(operations);
+
+        assertEquals(3, results.size());
+        assertResult(results.get(0), 0, BatchOperation.DELETE, 5L, 200);
+        assertResult(results.get(1), 1, BatchOperation.UPDATE, 7L, 409);
+        assertResult(results.get(2), 2, BatchOperation.CREATE, 42L, 201);
+        verify(repository).executeBatch(argThat(creates -> creates.size() == 1),
+                                        argThat(updates -> updates.size() == 1 && updates.get(0).getId() == 7L),
+                                        eq(List.of(5L)), any());
+    }
+
+    @Test
+    void rejectsAnInvalidOperationBeforeRunningAny() {
+        List<BatchOperation> operations = List.of(
+            new BatchOperation(BatchOperation.CREATE, null, todo("Fine")),
+            new BatchOperation(BatchOperation.UPDATE, null, todo("No id")));
+
+        assertThrows(ValidationException.class, () -> service.executeBatch(operations));
+        verify(repository, never()).executeBatch(any(), any(), any(), any());
+    }
+
+    private static Todo todo(String title) {
+        Todo todo = new Todo();
+        todo.setTitle(title);
+        return todo;
+    }
+
+    private static void assertResult(BatchResult result, int index, String op, Long id, int status) {
+        assertEquals(index, result.getIndex());
+        assertEquals(op, result.getOp());
+        assertEquals(id, result.getId());
+        assertEquals(status, result.getStatus());
+    }
+}
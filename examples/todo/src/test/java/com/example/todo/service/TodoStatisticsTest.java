@@ -0,0 +1,85 @@
+package com.example.todo.service;
+
+import com.example.todo.model.Todo;
+import com.example.todo.repository.TodoRepository;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TodoStatisticsTest {
+    private final TodoRepository repository = mock(TodoRepository.class);
+    private final TodoStatistics statistics = new TodoStatistics(repository);
+
+    @Test
+    void seedsFromTheDatabaseOnFirstUseOnly() {
+        when(repository.countTotalAndCompleted()).thenReturn(new TodoRepository.Counts(10, 4));
+
+        assertStats(10, 4, statistics.snapshot());
+        assertStats(10, 4, statistics.snapshot());
+        verify(repository, times(1)).countTotalAndCompleted();
+    }
+
+    @Test
+    void followsTheWritePaths() {
+        when(repository.countTotalAndCompleted()).thenReturn(new TodoRepository.Counts(0, 0));
+        statistics.reconcile();
+
+        statistics.onCreated(todo(false));
+        statistics.onCreated(todo(true));
+        statistics.onCompletedChanged(true);
+        statistics.onDeleted(todo(true));
+
+        assertStats(1, 1, statistics.snapshot());
+    }
+
+    @Test
+    void keepsIncrementsMadeWhileTheQueryRuns() {
+        when(repository.countTotalAndCompleted()).thenReturn(new TodoRepository.Counts(5, 1));
+        statistics.reconcile();
+        when(repository.countTotalAndCompleted()).thenAnswer(invocation -> {
+            // Committed after the query read
+            statistics.onCreated(todo(true));
+            return new TodoRepository.Counts(7, 2);
+        });
+
+        statistics.reconcile();
+
+        assertStats(8, 3, statistics.snapshot());
+    }
+
+    @Test
+    void correctsDriftFromOtherWriters() {
+        when(repository.countTotalAndCompleted()).thenReturn(new TodoRepository.Counts(3, 0));
+        statistics.reconcile();
+        statistics.onCreated(todo(false));
+        when(repository.countTotalAndCompleted()).thenReturn(new TodoRepository.Counts(2, 2));
+
+        statistics.reconcile();
+
+        assertStats(2, 2, statistics.snapshot());
+    }
+
+    @Test
+    void reseedsAfterAReconcileRequestWhenNotStarted() {
+        when(repository.countTotalAndCompleted()).thenReturn(new TodoRepository.Counts(4, 0));
+        statistics.snapshot();
+        when(repository.countTotalAndCompleted()).thenReturn(new TodoRepository.Counts(1, 0));
+
+        statistics.requestReconcile();
+
+        assertStats(1, 0, statistics.snapshot());
+    }
+
+    private static Todo todo(boolean completed) {
+        Todo todo = new Todo("Title", null);
+        todo.setCompleted(completed);
+        return todo;
+    }
+
+    private static void assertStats(long total, long completed, TodoService.TodoStats stats) {
+        assertEquals(total, stats.getTotal());
+        assertEquals(completed, stats.getCompleted());
+        assertEquals(total - completed, stats.getPending());
+    }
+}
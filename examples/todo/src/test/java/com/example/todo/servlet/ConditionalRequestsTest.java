@@ -0,0 +1,90 @@
+package com.example.todo.servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ConditionalRequestsTest {
+    private static final String ETAG = ConditionalRequests.etag("3-1700000000000");
+    private static final long LAST_MODIFIED = 1_700_000_000_123L;
+
+    private final HttpServletRequest req = mock(HttpServletRequest.class);
+    private final HttpServletResponse resp = mock(HttpServletResponse.class);
+
+    @Test
+    void setsTheValidators() {
+        assertFalse(ConditionalRequests.notModified(req, resp, ETAG, LAST_MODIFIED));
+        verify(resp).setHeader("ETag", "\"3-1700000000000\"");
+        verify(resp).setHeader("Cache-Control", "no-cache");
+        verify(resp).setDateHeader("Last-Modified", LAST_MODIFIED);
+        verify(resp, never()).setStatus(anyInt());
+    }
+
+    @Test
+    void omitsLastModifiedWhenUnknown() {
+        ConditionalRequests.notModified(req, resp, ETAG, 0);
+        verify(resp, never()).setDateHeader(eq("Last-Modified"), anyLong());
+    }
+
+    @Test
+    void answersNotModifiedForAMatchingEtag() {
+        when(req.getHeader("If-None-Match")).thenReturn(ETAG);
+        assertTrue(ConditionalRequests.notModified(req, resp, ETAG, LAST_MODIFIED));
+        verify(resp).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    @Test
+    void comparesEtagsWeakly() {
+        when(req.getHeader("If-None-Match")).thenReturn("W/" + ETAG);
+        assertTrue(ConditionalRequests.notModified(req, resp, ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void matchesAnyEtagOfAListOrAWildcard() {
+        when(req.getHeader("If-None-Match")).thenReturn("\"other\", " + ETAG);
+        assertTrue(ConditionalRequests.notModified(req, resp, ETAG, LAST_MODIFIED));
+
+        when(req.getHeader("If-None-Match")).thenReturn("*");
+        assertTrue(ConditionalRequests.notModified(req, resp, ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void sendsTheBodyForAStaleEtag() {
+        when(req.getHeader("If-None-Match")).thenReturn("\"2-1690000000000\"");
+        assertFalse(ConditionalRequests.notModified(req, resp, ETAG, LAST_MODIFIED));
+        verify(resp, never()).setStatus(anyInt());
+    }
+
+    @Test
+    void ignoresIfModifiedSinceWhenIfNoneMatchIsPresent() {
+        when(req.getHeader("If-None-Match")).thenReturn("\"2-1690000000000\"");
+        when(req.getDateHeader("If-Modified-Since")).thenReturn(LAST_MODIFIED);
+        assertFalse(ConditionalRequests.notModified(req, resp, ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void comparesIfModifiedSinceToTheSecond() {
+        when(req.getDateHeader("If-Modified-Since")).thenReturn(LAST_MODIFIED / 1000 * 1000);
+        assertTrue(ConditionalRequests.notModified(req, resp, ETAG, LAST_MODIFIED));
+
+        when(req.getDateHeader("If-Modified-Since")).thenReturn(LAST_MODIFIED - 1000);
+        assertFalse(ConditionalRequests.notModified(req, resp, ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void ignoresAnUnparseableIfModifiedSince() {
+        when(req.getDateHeader("If-Modified-Since")).thenThrow(new IllegalArgumentException("not a date"));
+        assertFalse(ConditionalRequests.notModified(req, resp, ETAG, LAST_MODIFIED));
+    }
+
+    @Test
+    void digestsToSixteenHexDigits() {
+        String digest = ConditionalRequests.digest("list;ID_ASC");
+        assertTrue(digest.matches("[0-9a-f]{16}"), digest);
+        assertEquals(digest, ConditionalRequests.digest("list;ID_ASC"));
+        assertNotEquals(digest, ConditionalRequests.digest("page;ID_ASC"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.todo.servlet;
+
+import com.example.metrics.LatencyFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RouterTest {
+    private final HttpServletResponse resp = mock(HttpServletResponse.class);
+    private final List<String> calls = new ArrayList<>();
+    private Router router;
+
+    @BeforeEach
+    void setUp() {
+        router = new Router("/api/todos")
+            .add(Router.Method.GET, "/", handler("list"))
+            .add(Router.Method.POST, "/", handler("create"))
+            .add(Router.Method.GET, "/stats", handler("stats"))
+            .add(Router.Method.GET, "/{id}", handler("get"))
+            .add(Router.Method.DELETE, "/{id}", handler("delete"))
+            .add(Router.Method.PUT, "/{id}/toggle", handler("toggle"));
+    }
+
+    @Test
+    void dispatchesRootWithAndWithoutPathInfo() throws Exception {
+        assertTrue(router.dispatch(Router.Method.GET, request(null), resp));
+        assertTrue(router.dispatch(Router.Method.POST, request("/"), resp));
+        assertEquals(List.of("list:-1", "create:-1"), calls);
+    }
+
+    @Test
+    void passesTheIdParameter() throws Exception {
+        assertTrue(router.dispatch(Router.Method.GET, request("/42"), resp));
+        assertTrue(router.dispatch(Router.Method.PUT, request("/7/toggle/"), resp));
+        assertEquals(List.of("get:42", "toggle:7"), calls);
+    }
+
+    @Test
+    void prefersLiteralSegmentsOverTheParameter() throws Exception {
+        assertTrue(router.dispatch(Router.Method.GET, request("/stats"), resp));
+        assertEquals(List.of("stats:-1"), calls);
+    }
+
+    @Test
+    void storesTheRouteTemplateForMetrics() throws Exception {
+        HttpServletRequest req = request("/42/toggle");
+        router.dispatch(Router.Method.PUT, req, resp);
+        verify(req).setAttribute(LatencyFilter.ROUTE_ATTRIBUTE, "/api/todos/{id}/toggle");
+    }
+
+    @Test
+    void rejectsPathsWithoutARoute() throws Exception {
+        assertFalse(router.dispatch(Router.Method.GET, request("/abc"), resp));
+        assertFalse(router.dispatch(Router.Method.GET, request("/-1"), resp));
+        assertFalse(router.dispatch(Router.Method.GET, request("/1234567890123456789"), resp));
+        assertFalse(router.dispatch(Router.Method.GET, request("/42/toggle/extra"), resp));
+        assertFalse(router.dispatch(Router.Method.GET, request("//42"), resp));
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    void rejectsMethodsWithoutAHandler() throws Exception {
+        assertFalse(router.dispatch(Router.Method.PUT, request("/42"), resp));
+        assertFalse(router.dispatch(Router.Method.DELETE, request("/"), resp));
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    void rejectsDuplicateRoutesAndSecondParameters() {
+        assertThrows(IllegalArgumentException.class, () -> router.add(Router.Method.GET, "/{id}/", handler("again")));
+        assertThrows(IllegalArgumentException.class, () -> router.add(Router.Method.GET, "/{id}/{id}", handler("two")));
+    }
+
+    private Router.Handler handler(String name) {
+        return (req, resp, id) -> calls.add(name + ":" + id);
+    }
+
+    private static HttpServletRequest request(String pathInfo) {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getPathInfo()).thenReturn(pathInfo);
+        return req;
+    }
+}
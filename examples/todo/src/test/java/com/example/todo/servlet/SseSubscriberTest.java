@@ -0,0 +1,74 @@
+package com.example.todo.servlet;
+
+import com.example.todo.model.TodoEvent;
+import com.example.todo.service.TodoEventBroadcaster;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SseSubscriberTest {
+    private final TodoEventBroadcaster broadcaster = new TodoEventBroadcaster();
+    private final SseEncoder encoder = new SseEncoder(new ObjectMapper());
+    private final HttpServletRequest req = mock(HttpServletRequest.class);
+    private final HttpServletResponse resp = mock(HttpServletResponse.class);
+    private final AsyncContext async = mock(AsyncContext.class);
+    private final ServletOutputStream out = mock(ServletOutputStream.class);
+    private WriteListener writeListener;
+
+    @BeforeEach
+    void open() throws IOException {
+        when(req.startAsync()).thenReturn(async);
+        when(resp.getOutputStream()).thenReturn(out);
+        SseSubscriber.open(req, resp, broadcaster, encoder);
+
+        ArgumentCaptor<WriteListener> captor = ArgumentCaptor.forClass(WriteListener.class);
+        verify(out).setWriteListener(captor.capture());
+        writeListener = captor.getValue();
+    }
+
+    @Test
+    void writesOnlyWhileTheStreamIsReady() throws IOException {
+        when(out.isReady()).thenReturn(true, true, false);
+        writeListener.onWritePossible();
+        TodoEvent event = broadcaster.deliver(TodoEvent.CREATED, 1L, null);
+        verify(out).write(SseEncoder.PREAMBLE);
+        verify(out).flush();
+
+        // The client has stopped reading: the event stays buffered
+        ((TodoEventBroadcaster.Subscriber) writeListener).flush();
+        verify(out, never()).write(encoder.encode(event));
+
+        when(out.isReady()).thenReturn(true, true, false);
+        writeListener.onWritePossible();
+        verify(out).write(encoder.encode(event));
+        assertEquals(1, broadcaster.getSubscriberCount());
+    }
+
+    @Test
+    void aStalledClientIsEvictedWhenItsBufferOverflows() throws IOException {
+        when(out.isReady()).thenReturn(false);
+        writeListener.onWritePossible();
+
+        for (int i = 0; i < 2 * TodoEventBroadcaster.HISTORY_SIZE; i++) {
+            broadcaster.deliver(TodoEvent.UPDATED, 1L, null);
+        }
+        assertEquals(1, broadcaster.getSubscriberCount());
+        verify(async, never()).complete();
+
+        broadcaster.deliver(TodoEvent.UPDATED, 1L, null);
+        assertEquals(0, broadcaster.getSubscriberCount());
+        verify(async).complete();
+        verify(out, never()).write(any(byte[].class));
+    }
+}